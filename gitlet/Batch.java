@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch mode, "gitlet --batch [FILE] [--every N]", which runs many
+ * commands in one JVM against one Gitlet system read once from disk. The
+ * commands are read one per line from FILE, or from the standard input if
+ * FILE is absent or "-". A line is split into arguments at white space,
+ * except within single or double quotes; a backslash outside single quotes
+ * takes the next character literally. Blank lines and lines starting with
+ * '#' are skipped. The output of each command is followed by a line
+ * holding DELIMITER and flushed at once. The system is written back to
+ * disk when the batch ends, and also after every N commands if N is given.
+ * A command that fails part way is reported, and the system is read again
+ * from disk, losing whatever had not been written yet.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Batch {
+
+    /** The line that ends the output of each command. */
+    static final String DELIMITER = "---";
+
+    /** Run the batch described by ARGS, which start with "--batch". */
+    static void run(String[] args) {
+        String source = "-";
+        int every = 0;
+        for (int i = 1; i < args.length; i += 1) {
+            if (args[i].equals("--every") && i + 1 < args.length) {
+                try {
+                    every = Integer.parseInt(args[i += 1]);
+                } catch (NumberFormatException excp) {
+                    every = -1;
+                }
+                if (every <= 0) {
+                    System.out.println("Incorrect operands.");
+                    return;
+                }
+            } else if (i == 1) {
+                source = args[i];
+            } else {
+                System.out.println("Incorrect operands.");
+                return;
+            }
+        }
+        if (Server.isRunning()) {
+            System.out.println("A server is running; stop it first.");
+            return;
+        }
+        try (InputStream in = source.equals("-")
+                 ? System.in : new FileInputStream(source)) {
+            run(new BufferedReader(new InputStreamReader(in,
+                    StandardCharsets.UTF_8)), every);
+        } catch (IOException excp) {
+            System.out.println("Cannot read " + source + ".");
+        }
+    }
+
+    /**
+     * Run every command read from IN, writing the system back to disk after
+     * each EVERY commands, if EVERY is positive, and at the end.
+     */
+    private static void run(BufferedReader in, int every) throws IOException {
+        Gitlet git = Gitlet.reconstruct();
+        int unsaved = 0;
+        for (String line = in.readLine(); line != null;
+             line = in.readLine()) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] args = split(trimmed);
+            try {
+                if (args == null) {
+                    System.out.println("Unterminated quote.");
+                } else {
+                    Stats.Command event = new Stats.Command(args);
+                    Gitlet.interpret(args, git);
+                    event.finish();
+                    unsaved += 1;
+                }
+                if (every > 0 && unsaved >= every) {
+                    git.serialize();
+                    unsaved = 0;
+                }
+            } catch (RuntimeException excp) {
+                System.out.println(excp.getMessage());
+                git = Gitlet.reconstruct();
+                unsaved = 0;
+            }
+            System.out.println(DELIMITER);
+            System.out.flush();
+        }
+        git.serialize();
+    }
+
+    /**
+     * Return the arguments of the command LINE, or null if it has an
+     * unterminated quote.
+     */
+    static String[] split(String line) {
+        List<String> result = new ArrayList<String>();
+        StringBuilder arg = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                if (arg != null) {
+                    result.add(arg.toString());
+                    arg = null;
+                }
+                continue;
+            }
+            if (arg == null) {
+                arg = new StringBuilder();
+            }
+            if (c == quote) {
+                quote = 0;
+            } else if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == '\\' && quote != '\'' && i + 1 < line.length()) {
+                i += 1;
+                arg.append(line.charAt(i));
+            } else {
+                arg.append(c);
+            }
+        }
+        if (quote != 0) {
+            return null;
+        }
+        if (arg != null) {
+            result.add(arg.toString());
+        }
+        return result.toArray(new String[0]);
+    }
+
+}
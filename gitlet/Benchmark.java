@@ -0,0 +1,361 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the gitlet commands add, commit, status, checkout, log and
+ * merge, run in the manner of JMH: every combination of benchmark and
+ * parameters runs in a fresh JVM (a fork) inside a new temporary directory,
+ * where it builds a synthetic repository, runs warmup iterations, then
+ * measured iterations, and reports the mean throughput with its standard
+ * deviation and the bytes allocated per operation. Commands are run
+ * through Gitlet.interpret against one system held in memory, and the
+ * system is written back after each, as the command line does; no JVM is
+ * started per command.
+ *
+ * Usage: java gitlet.Benchmark [--bench NAMES] [--files NS] [--size NS]
+ * [--depth NS] [--branches NS] [--warmup N] [--iterations N] [--time MS],
+ * where NAMES and NS are comma-separated lists. The repository has FILES
+ * files of SIZE bytes, spread over subdirectories of 100, a history of
+ * DEPTH commits each changing a twentieth of them, and BRANCHES branches
+ * off the last commit, each changing a twentieth. Each iteration lasts
+ * about TIME milliseconds of measured operations.
+ *
+ * Allocation is read from the ThreadMXBean for every live thread, so work
+ * done on pool threads, as by status and checkout, is counted.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Benchmark {
+
+    /** The benchmarks, by name. */
+    private static final Map<String, Case> CASES =
+        new LinkedHashMap<String, Case>();
+
+    /** Files per subdirectory of the synthetic repository. */
+    private static final int FILES_PER_DIR = 100;
+
+    /**
+     * First version of file contents written by benchmarks, above any
+     * written while building the repository.
+     */
+    private static final int FRESH = 1 << 20;
+
+    /**
+     * One benchmark: an untimed preparation and a timed operation, each
+     * given the number of operations run before it.
+     */
+    private abstract static class Case {
+        /** Prepare for operation N. */
+        void prepare(int n) {
+        }
+        /** Run operation N. */
+        abstract void run(int n);
+    }
+
+    static {
+        CASES.put("add", new Case() {
+            @Override
+            void prepare(int n) {
+                change(n % _files, FRESH + n);
+            }
+            @Override
+            void run(int n) {
+                command("add", path(n % _files));
+            }
+        });
+        CASES.put("commit", new Case() {
+            @Override
+            void prepare(int n) {
+                change(n % _files, FRESH + n);
+                command("add", path(n % _files));
+            }
+            @Override
+            void run(int n) {
+                command("commit", "benchmark " + n);
+            }
+        });
+        CASES.put("status", new Case() {
+            @Override
+            void run(int n) {
+                command("status");
+            }
+        });
+        CASES.put("checkout", new Case() {
+            @Override
+            void run(int n) {
+                command("checkout", n % 2 == 0 ? "branch0" : "master");
+            }
+        });
+        CASES.put("log", new Case() {
+            @Override
+            void run(int n) {
+                command("log");
+            }
+        });
+        CASES.put("merge", new Case() {
+            @Override
+            void prepare(int n) {
+                command("branch", "merge" + n);
+                command("checkout", "merge" + n);
+                change(0, FRESH + n);
+                command("add", path(0));
+                command("commit", "theirs " + n);
+                command("checkout", "master");
+                change(_files - 1, FRESH + n);
+                command("add", path(_files - 1));
+                command("commit", "ours " + n);
+            }
+            @Override
+            void run(int n) {
+                command("merge", "merge" + n);
+            }
+        });
+    }
+
+    /** Run the benchmarks as ARGS say. */
+    public static void main(String... args) throws IOException {
+        if (args.length > 0 && args[0].equals("--fork")) {
+            fork(args);
+            return;
+        }
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        options.put("--bench", String.join(",", CASES.keySet()));
+        options.put("--files", "100,1000");
+        options.put("--size", "1024");
+        options.put("--depth", "20");
+        options.put("--branches", "2");
+        options.put("--warmup", "2");
+        options.put("--iterations", "5");
+        options.put("--time", "1000");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!options.containsKey(args[i])) {
+                usage();
+                return;
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        if (args.length % 2 != 0) {
+            usage();
+            return;
+        }
+        System.out.printf("%-10s %6s %6s %6s %8s %12s %10s %12s%n",
+                "Benchmark", "files", "size", "depth", "branches",
+                "ops/s", "sd", "B/op");
+        for (String bench : options.get("--bench").split(",")) {
+            if (!CASES.containsKey(bench)) {
+                System.out.println("No benchmark named " + bench + ".");
+                continue;
+            }
+            for (String files : options.get("--files").split(",")) {
+                for (String size : options.get("--size").split(",")) {
+                    for (String depth : options.get("--depth").split(",")) {
+                        for (String branches
+                                 : options.get("--branches").split(",")) {
+                            String result = runFork(bench, files, size, depth,
+                                    branches, options.get("--warmup"),
+                                    options.get("--iterations"),
+                                    options.get("--time"));
+                            System.out.printf("%-10s %6s %6s %6s %8s %s%n",
+                                    bench, files, size, depth, branches,
+                                    result);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Print how to run the benchmarks. */
+    private static void usage() {
+        System.out.println("Usage: java gitlet.Benchmark [--bench NAMES]"
+                + " [--files NS] [--size NS] [--depth NS] [--branches NS]"
+                + " [--warmup N] [--iterations N] [--time MS]");
+    }
+
+    /**
+     * Run benchmark BENCH with PARAMS in a new JVM in a new temporary
+     * directory, and return its line of results.
+     */
+    private static String runFork(String bench, String... params)
+        throws IOException {
+        Path dir = Files.createTempDirectory("gitlet-bench");
+        String classPath = Arrays.stream(System.getProperty(
+                "java.class.path").split(File.pathSeparator))
+            .map(entry -> new File(entry).getAbsolutePath())
+            .collect(Collectors.joining(File.pathSeparator));
+        List<String> command = new ArrayList<String>(Arrays.asList(
+                "java", "-cp", classPath, "gitlet.Benchmark", "--fork",
+                bench));
+        command.addAll(Arrays.asList(params));
+        try {
+            Process fork = new ProcessBuilder(command).directory(dir.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            String result;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    fork.getInputStream()))) {
+                result = in.readLine();
+            }
+            if (fork.waitFor() != 0 || result == null) {
+                return "failed";
+            }
+            return result;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * In a fork, whose working directory is empty, build the repository and
+     * run the benchmark that ARGS describe: "--fork", the benchmark, files,
+     * size, depth, branches, warmup, iterations and time.
+     */
+    private static void fork(String[] args) {
+        Case bench = CASES.get(args[1]);
+        int[] values = new int[args.length - 2];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = Integer.parseInt(args[i + 2]);
+        }
+        _files = Math.max(1, values[0]);
+        _size = values[1];
+        int depth = values[2], branches = values[3];
+        int warmup = values[4], iterations = values[5];
+        long time = values[6] * 1000000L;
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        build(depth, Math.max(branches, args[1].equals("checkout") ? 1 : 0));
+        double[] scores = new double[iterations];
+        long bytes = 0, ops = 0;
+        int n = 0;
+        for (int iter = 0; iter < warmup + iterations; iter += 1) {
+            long nanos = 0, iterOps = 0, iterBytes = 0;
+            long deadline = System.nanoTime() + 10 * time;
+            while (nanos < time && System.nanoTime() < deadline
+                   || iterOps == 0) {
+                bench.prepare(n);
+                long allocated = allocated();
+                long start = System.nanoTime();
+                bench.run(n);
+                nanos += System.nanoTime() - start;
+                iterBytes += allocated() - allocated;
+                iterOps += 1;
+                n += 1;
+            }
+            if (iter >= warmup) {
+                scores[iter - warmup] = iterOps * 1e9 / nanos;
+                bytes += iterBytes;
+                ops += iterOps;
+            }
+        }
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double sd = Math.sqrt(Arrays.stream(scores)
+                .map(s -> (s - mean) * (s - mean)).sum()
+                / Math.max(1, scores.length - 1));
+        results.printf("%12.2f %10.2f %12d%n", mean, sd,
+                ops == 0 ? 0 : bytes / ops);
+    }
+
+    /**
+     * Build the synthetic repository, with a history of DEPTH commits and
+     * BRANCHES branches.
+     */
+    private static void build(int depth, int branches) {
+        _git = Gitlet.reconstruct();
+        command("init");
+        for (int i = 0; i < _files; i += 1) {
+            change(i, 0);
+            command("add", path(i));
+        }
+        command("commit", "base");
+        int step = Math.max(1, _files / 20);
+        for (int d = 1; d < depth; d += 1) {
+            for (int i = 0; i < step; i += 1) {
+                int file = (d * step + i) % _files;
+                change(file, d);
+                command("add", path(file));
+            }
+            command("commit", "history " + d);
+        }
+        for (int b = 0; b < branches; b += 1) {
+            command("branch", "branch" + b);
+            command("checkout", "branch" + b);
+            for (int i = 0; i < step; i += 1) {
+                int file = (b * step + i) % _files;
+                change(file, -1 - b);
+                command("add", path(file));
+            }
+            command("commit", "branch " + b);
+            command("checkout", "master");
+        }
+    }
+
+    /** Run the gitlet command ARGS and write the system back. */
+    private static void command(String... args) {
+        Gitlet.interpret(args, _git);
+        _git.serialize();
+    }
+
+    /** Return the path of the Ith file of the repository. */
+    private static String path(int i) {
+        return "d" + (i / FILES_PER_DIR) + "/f" + i + ".txt";
+    }
+
+    /** Write version VERSION of the contents of the Ith file. */
+    private static void change(int i, int version) {
+        Random random = new Random(31L * i + version);
+        byte[] contents = new byte[_size];
+        for (int k = 0; k < contents.length; k += 1) {
+            contents[k] = k % 64 == 63 ? (byte) '\n'
+                : (byte) ('a' + random.nextInt(26));
+        }
+        File file = new File(path(i));
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+    /** Return the bytes allocated so far by all live threads. */
+    private static long allocated() {
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes
+                 : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /** The system benchmarked in a fork. */
+    private static Gitlet _git;
+
+    /** Number of files of the repository. */
+    private static int _files;
+
+    /** Size of each file, in bytes. */
+    private static int _size;
+
+}
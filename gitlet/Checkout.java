@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes many blobs into the working directory at once, as a two-stage
+ * pipeline. Reader threads open and inflate objects; writer threads put
+ * the inflated contents into their files. At most IN_FLIGHT files are
+ * between the two stages at any time: the thread handing out files waits
+ * for one to finish before starting another, so memory stays bounded
+ * however many files there are. A blob too large to buffer is streamed
+ * to its file by its reader instead. The number of threads of each stage
+ * and the number of files in flight may be set with the system properties
+ * gitlet.checkout.threads and gitlet.checkout.inflight.
+ *
+ * Blobs that the ObjectStore keeps raw are copied from their object files
+ * with FileChannel.transferTo, which lets the kernel move the data without
+ * passing it through the JVM. If the system property gitlet.checkout.link
+ * is "hardlink", they are hard-linked instead, and the working files made
+ * read-only so that they are not edited in place; if it is "reflink", they
+ * are cloned copy-on-write with cp --reflink, where the file system can.
+ * Once linking fails, as across file systems, copying is used instead.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Checkout {
+
+    /** Threads in each stage of the pipeline. */
+    static final int THREADS = Math.max(1, Integer.getInteger(
+            "gitlet.checkout.threads",
+            Runtime.getRuntime().availableProcessors()));
+
+    /** Most files read but not yet written at once. */
+    static final int IN_FLIGHT = Math.max(1, Integer.getInteger(
+            "gitlet.checkout.inflight", 4 * THREADS));
+
+    /** How raw blobs are checked out: "copy", "hardlink" or "reflink". */
+    static final String LINK = System.getProperty("gitlet.checkout.link",
+            "copy");
+
+    /** Fewest files that are written through the pipeline. */
+    private static final int PARALLEL_CHECKOUT = 16;
+
+    /** Largest blob a reader buffers for a writer, in bytes. */
+    private static final int MAX_BUFFERED = 1 << 20;
+
+    /**
+     * Write every blob of FILES, which maps paths to blob ids, to its path,
+     * creating directories as needed.
+     */
+    static void write(Map<String, ObjectId> files) {
+        if (files.size() < PARALLEL_CHECKOUT || THREADS == 1) {
+            for (Map.Entry<String, ObjectId> e : files.entrySet()) {
+                ObjectStore.checkout(e.getValue(), new File(e.getKey()));
+            }
+            return;
+        }
+        makeDirectories(files);
+        ExecutorService readers = Executors.newFixedThreadPool(THREADS);
+        ExecutorService writers = Executors.newFixedThreadPool(THREADS);
+        Semaphore inFlight = new Semaphore(IN_FLIGHT);
+        AtomicReference<RuntimeException> error =
+            new AtomicReference<RuntimeException>();
+        try {
+            for (Map.Entry<String, ObjectId> e : files.entrySet()) {
+                inFlight.acquireUninterruptibly();
+                if (error.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                File dest = new File(e.getKey());
+                ObjectId id = e.getValue();
+                readers.execute(() -> {
+                    try {
+                        byte[] contents = read(id, dest);
+                        if (contents == null) {
+                            inFlight.release();
+                            return;
+                        }
+                        writers.execute(() -> {
+                            try {
+                                ObjectStore.prepareWorkingFile(dest);
+                                Utils.writeContents(dest, contents);
+                            } catch (RuntimeException excp) {
+                                error.compareAndSet(null, excp);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RuntimeException excp) {
+                        error.compareAndSet(null, excp);
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquireUninterruptibly(IN_FLIGHT);
+        } finally {
+            readers.shutdown();
+            writers.shutdown();
+            awaitTermination(readers);
+            awaitTermination(writers);
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    /**
+     * Return the contents of blob ID if it is small enough to buffer.
+     * Otherwise, or if it is stored raw, write it to DEST and return null.
+     */
+    private static byte[] read(ObjectId id, File dest) {
+        if (ObjectStore.isRaw(id)) {
+            ObjectStore.checkout(id, dest);
+            return null;
+        }
+        try (InputStream in = ObjectStore.open(id)) {
+            byte[] head = in.readNBytes(MAX_BUFFERED + 1);
+            if (head.length <= MAX_BUFFERED) {
+                return head;
+            }
+            ObjectStore.prepareWorkingFile(dest);
+            try (OutputStream out = new FileOutputStream(dest)) {
+                out.write(head);
+                Utils.copy(in, out);
+            }
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Put the contents of OBJECT, the file of a raw blob, at DEST, which
+     * does not exist or may be overwritten, linking to it as LINK says.
+     */
+    static void copyRaw(File object, File dest) {
+        if (!LINK.equals("copy") && _linking) {
+            dest.delete();
+            if (LINK.equals("hardlink") ? hardlink(object, dest)
+                : reflink(object, dest)) {
+                return;
+            }
+            _linking = false;
+        }
+        try (FileChannel in = FileChannel.open(object.toPath(),
+                 StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(),
+                 StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(in, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Copy all of IN to OUT with transferTo. */
+    static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        for (long pos = 0; pos < size; ) {
+            pos += in.transferTo(pos, size - pos, out);
+        }
+    }
+
+    /**
+     * Make DEST a read-only hard link to OBJECT and return true, or return
+     * false if that cannot be done.
+     */
+    private static boolean hardlink(File object, File dest) {
+        try {
+            Files.createLink(dest.toPath(), object.toPath());
+            dest.setReadOnly();
+            return true;
+        } catch (IOException | UnsupportedOperationException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Make DEST a copy-on-write clone of OBJECT and return true, or return
+     * false if the file system or the system's cp cannot do so.
+     */
+    private static boolean reflink(File object, File dest) {
+        try {
+            Process cp = new ProcessBuilder("cp", "--reflink=always",
+                    object.getPath(), dest.getPath())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            if (cp.waitFor() == 0) {
+                return true;
+            }
+        } catch (IOException excp) {
+            return false;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        dest.delete();
+        return false;
+    }
+
+    /**
+     * Create the directories holding the paths of FILES, refusing to
+     * overwrite a directory with a file.
+     */
+    private static void makeDirectories(Map<String, ObjectId> files) {
+        TreeSet<File> dirs = new TreeSet<File>();
+        for (String name : files.keySet()) {
+            File dest = new File(name);
+            if (dest.isDirectory()) {
+                throw new IllegalArgumentException(
+                    "cannot overwrite directory");
+            }
+            if (dest.getParentFile() != null) {
+                dirs.add(dest.getParentFile());
+            }
+        }
+        for (File dir : dirs) {
+            dir.mkdirs();
+        }
+    }
+
+    /** Wait for the tasks of POOL, which has been shut down, to finish. */
+    private static void awaitTermination(ExecutorService pool) {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                continue;
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** False once linking has failed, after which raw blobs are copied. */
+    private static volatile boolean _linking = true;
+
+}
@@ -1,72 +1,235 @@
 package gitlet;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
-import java.io.Serializable;
+import java.util.List;
 
 /**
  * Commit objects that will be chained together, representing the history of the
- * files.
+ * files. Each commit is an immutable record, written once to
+ * .gitlet/commits/ID in a small versioned binary format, and refers to its
+ * parent, and for a merge its second parent, by id. Its files are recorded
+ * as a Tree, read only when the files are needed.
  *
  * @author Kevin Vo and Christian Lista-Nicoloso
  */
-public class Commit implements Serializable {
+public class Commit {
+
+    /** The directory holding all commit records. */
+    static final File COMMITS = new File(".gitlet/commits");
+
+    /**
+     * Version of the commit record format. Records of versions 1, which
+     * have no second parent, 2, which list their files instead of naming a
+     * tree, and 3, whose message and date are limited to 64 KB by
+     * DataOutput.writeUTF, are still read.
+     */
+    private static final int VERSION = 4;
+
+    /** Format of commit dates. */
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Recently used commits. Its size can be set with the system property
+     * gitlet.commitCache.
+     */
+    static final CommitCache CACHE = new CommitCache(Integer.getInteger(
+            "gitlet.commitCache", CommitCache.DEFAULT_CAPACITY));
 
     /**
      * Create a new Commit Object with the message LOG and that points to
-     * PARENT.
+     * PARENT, holding the files tracked in INDEX once its stage is applied.
      */
-    public Commit(String log, Commit parent) {
+    public Commit(String log, Commit parent, Index index) {
+        this(log, parent, null, index);
+    }
+
+    /**
+     * Create a new Commit Object with the message LOG and that points to
+     * PARENT and, for a merge, to SECONDPARENT, holding the files tracked in
+     * INDEX once its stage is applied.
+     */
+    public Commit(String log, Commit parent, Commit secondParent,
+                  Index index) {
         if (log.isEmpty()) {
             System.out.println("Please enter a commit message.");
         }
         _log = log;
-        DateTimeFormatter formatter = DateTimeFormatter
-            .ofPattern("yyyy-MM-dd HH:mm:ss");
         LocalDateTime dateTime = LocalDateTime.now();
-        _date = dateTime.format(formatter);
-        _parent = parent;
-        _value = Utils.sha1(_log, _date);
-        _commitDirectory = new File(".gitlet/commits/" + _value);
-        _commitDirectory.mkdirs();
-        updateFiles();
+        _date = dateTime.format(DATE_FORMAT);
+        _parentId = parent == null ? null : parent.getValue();
+        _secondParentId = secondParent == null
+            ? null : secondParent.getValue();
+        updateFiles(index);
+        _tree = Tree.write(_files);
+        _value = hash(0);
+        for (int n = 1; new File(COMMITS, _value.toString()).exists();
+             n += 1) {
+            _value = hash(n);
+        }
+        write();
+        CommitGraph.add(this);
+        MessageIndex.add(_value, _log);
+        CACHE.put(this);
+    }
+
+    /** Read the commit with full id ID from IN. */
+    private Commit(ObjectId id, DataInputStream in) throws IOException {
+        int version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("unknown commit format");
+        }
+        _value = id;
+        _log = version >= 4 ? readString(in) : in.readUTF();
+        _date = version >= 4 ? readString(in) : in.readUTF();
+        _parentId = in.readBoolean() ? ObjectId.read(in) : null;
+        if (version >= 2 && in.readBoolean()) {
+            _secondParentId = ObjectId.read(in);
+        }
+        if (version >= 3) {
+            _tree = ObjectId.read(in);
+            return;
+        }
+        _files = new HashMap<String, ObjectId>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i += 1) {
+            String name = in.readUTF();
+            _files.put(name, ObjectId.read(in));
+        }
+    }
+
+    /**
+     * Return the commit with full id ID, or null if there is none. Commits
+     * are read through CACHE, so that walking history repeatedly does not
+     * reparse it.
+     */
+    static Commit read(ObjectId id) {
+        return CACHE.get(id);
+    }
+
+    /** Read the commit with full id ID from disk, or return null. */
+    static Commit load(ObjectId id) {
+        File file = new File(COMMITS, id.toString());
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            return new Commit(id, in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the ids of all commits ever made, in sorted order. */
+    static List<ObjectId> allIds() {
+        return CommitIndex.ids();
+    }
+
+    /**
+     * Return the id of this commit, hashed from its tree, parents, date and
+     * message and, if N is positive, the number N, which tells apart
+     * commits that would otherwise be identical.
+     */
+    private ObjectId hash(int n) {
+        return Utils.sha1Id("tree " + _tree + "\nparent " + _parentId
+                + "\nparent " + _secondParentId + "\ndate " + _date + "\n"
+                + (n > 0 ? "nonce " + n + "\n" : "") + "\n", _log);
+    }
+
+    /**
+     * Write this commit's record, which must not exist yet. Throws
+     * IllegalArgumentException if it does. The record is built in memory
+     * first, so that a failure leaves no partial record behind.
+     */
+    private void write() {
+        File file = new File(COMMITS, _value.toString());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeString(out, _log);
+            writeString(out, _date);
+            out.writeBoolean(_parentId != null);
+            if (_parentId != null) {
+                _parentId.write(out);
+            }
+            out.writeBoolean(_secondParentId != null);
+            if (_secondParentId != null) {
+                _secondParentId.write(out);
+            }
+            _tree.write(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.write(file.toPath(), bytes.toByteArray(),
+                    StandardOpenOption.CREATE_NEW);
+        } catch (IOException excp) {
+            if (!(excp instanceof FileAlreadyExistsException)) {
+                file.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
     }
 
-    /** The unique directory for this commit. */
-    private File _commitDirectory;
+    /** Write S to OUT as its length in bytes followed by its UTF-8 bytes. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return a string written by writeString, read from IN. */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("corrupt commit");
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("corrupt commit");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
 
     /**
      * Sets the files of this commit to the correct version of the file, taking
-     * from the last commit or the stage as necessary.
-     */
-    private void updateFiles() {
-        copyStage();
-        if (_parent != null) {
-            for (File file : new File(".gitlet").listFiles()) {
-                if (file.isFile()) {
-                    _files.put(file.getName(),
-                            Utils.sha1(Utils.readContents(file)));
-                    Utils.writeContents(new File(_commitDirectory.getPath()
-                            + "/" + file.getName()), Utils.readContents(file));
-                }
+     * from the tracked files of INDEX after the stage is applied. Staged blobs
+     * are already in the object store, so no file is read or written.
+     */
+    private void updateFiles(Index index) {
+        _files = new HashMap<String, ObjectId>();
+        if (_parentId != null) {
+            copyStage(index);
+            for (String name : index.trackedNames()) {
+                _files.put(name, index.tracked(name));
             }
-        } else {
-            _files = new HashMap<String, String>();
         }
     }
 
     /**
-     * Copies the stage directory and at the same time, clears it. Also sends
-     * files to .gitlet for tracking.
+     * Moves the staged files of INDEX to its tracked files, clearing the
+     * stage.
      */
-    private void copyStage() {
-        File stage = new File(".gitlet/stage");
-        for (File file : stage.listFiles()) {
-            File copy = new File(".gitlet/" + file.getName());
-            Utils.writeContents(copy, Utils.readContents(file));
-            file.delete();
+    private void copyStage(Index index) {
+        for (String name : index.stagedNames()) {
+            index.track(name, index.staged(name));
+            index.unstage(name);
         }
     }
 
@@ -74,19 +237,29 @@ public class Commit implements Serializable {
      * Returns true if FILE is contained in this Commit.
      */
     public boolean contains(File file) {
+        String key = Tree.normalize(file.getPath());
+        return key != null && getFiles().containsKey(key)
+                && getFiles().get(key).equals(Utils.sha1(file));
+    }
+
+    /**
+     * Return the files this commit, keyed by path.
+     */
+    public HashMap<String, ObjectId> getFiles() {
         if (_files == null) {
-            return false;
+            _files = Tree.flatten(_tree);
         }
-        String key = file.getName();
-        return _files.containsKey(key)
-                && _files.get(key).equals(Utils.sha1(Utils.readContents(file)));
+        return _files;
     }
 
     /**
-     * Return the files this commit.
+     * Return the id of the tree of this commit's files.
      */
-    public HashMap<String, String> getFiles() {
-        return _files;
+    public ObjectId getTree() {
+        if (_tree == null) {
+            _tree = Tree.write(_files);
+        }
+        return _tree;
     }
 
     /**
@@ -96,6 +269,10 @@ public class Commit implements Serializable {
         System.out.println("===");
         System.out.printf("Commit %s", _value);
         System.out.println("");
+        if (_secondParentId != null) {
+            System.out.println("Merge: " + _parentId.toString().substring(0, 7)
+                + " " + _secondParentId.toString().substring(0, 7));
+        }
         System.out.println(_date);
         System.out.println(_log);
         System.out.println("");
@@ -109,10 +286,26 @@ public class Commit implements Serializable {
     }
 
     /**
-     * Return the parent of this commit.
+     * Return the parent of this commit, resolved by id on demand, or null if
+     * this is the initial commit.
      */
     public Commit getParent() {
-        return _parent;
+        return _parentId == null ? null : read(_parentId);
+    }
+
+    /**
+     * Return the id of the parent of this commit, or null.
+     */
+    public ObjectId getParentId() {
+        return _parentId;
+    }
+
+    /**
+     * Return the id of the second parent of this commit, or null if it is
+     * not a merge.
+     */
+    public ObjectId getSecondParentId() {
+        return _secondParentId;
     }
 
     /**
@@ -122,17 +315,26 @@ public class Commit implements Serializable {
         return _date;
     }
 
+    /**
+     * Return the time of this commit, in seconds since the epoch as if its
+     * date were in UTC.
+     */
+    long getTime() {
+        return LocalDateTime.parse(_date, DATE_FORMAT)
+            .toEpochSecond(ZoneOffset.UTC);
+    }
+
     /**
      * Return the value of this commit.
      */
-    public String getValue() {
+    public ObjectId getValue() {
         return _value;
     }
 
     /**
      * The value of this commit.
      */
-    private String _value;
+    private ObjectId _value;
 
     /**
      * The message associated with this commit.
@@ -145,12 +347,24 @@ public class Commit implements Serializable {
     private String _date;
 
     /**
-     * The date this commit was made.
+     * The files of this commit, by path, or null until they are read
+     * from _tree.
+     */
+    private HashMap<String, ObjectId> _files;
+
+    /**
+     * The tree of this commit's files, or null until it is computed for
+     * a record of an old version.
+     */
+    private ObjectId _tree;
+
+    /**
+     * The id of this commit's parent.
      */
-    private HashMap<String, String> _files = new HashMap<String, String>();
+    private ObjectId _parentId;
 
     /**
-     * This commit's parent.
+     * The id of this commit's second parent if it is a merge, or null.
      */
-    private Commit _parent;
+    private ObjectId _secondParentId;
 }
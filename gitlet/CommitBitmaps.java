@@ -0,0 +1,176 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reachability bitmaps for selected commits, kept in .gitlet/commit-bitmaps
+ * next to the commit graph. The bitmap of a commit has bit P set for every
+ * commit at graph position P that it can reach, itself included. Every
+ * SPACING-th commit gets a bitmap when it is made, and gc adds bitmaps for
+ * the branch heads, so that any walk of history meets a bitmap within a few
+ * dozen commits and can take everything below it in one step. The file is
+ * discarded whenever the graph is rebuilt, since positions may change.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class CommitBitmaps {
+
+    /** The bitmap file. */
+    static final File FILE = new File(".gitlet/commit-bitmaps");
+
+    /** Graph positions that are multiples of SPACING get bitmaps. */
+    static final int SPACING = 100;
+
+    /** Magic number at the start of FILE. */
+    private static final int MAGIC = 0x47424d50;
+
+    /** Version of the format of FILE. */
+    private static final int VERSION = 1;
+
+    /** Return the bitmap of the commit at POS, or null if it has none. */
+    static EwahBitmap get(int pos) {
+        return bitmaps().get(pos);
+    }
+
+    /**
+     * Record a bitmap for the commit at POS, which has just been added to
+     * the graph, if its position is due one.
+     */
+    static void added(int pos) {
+        if (pos % SPACING != 0 || bitmaps().containsKey(pos)) {
+            return;
+        }
+        EwahBitmap bitmap = EwahBitmap.of(reachable(pos));
+        boolean fresh = !FILE.isFile();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(FILE, true)))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.writeInt(pos);
+            bitmap.write(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _bitmaps.put(pos, bitmap);
+    }
+
+    /**
+     * Rewrite FILE with bitmaps for every SPACING-th commit and for the
+     * commits at HEADS.
+     */
+    static void write(Collection<Integer> heads) {
+        TreeMap<Integer, EwahBitmap> result =
+            new TreeMap<Integer, EwahBitmap>();
+        _bitmaps = new HashMap<Integer, EwahBitmap>();
+        for (int pos = 0; pos < CommitGraph.size(); pos += SPACING) {
+            result.put(pos, EwahBitmap.of(reachable(pos)));
+            _bitmaps.put(pos, result.get(pos));
+        }
+        for (int pos : heads) {
+            result.put(pos, EwahBitmap.of(reachable(pos)));
+            _bitmaps.put(pos, result.get(pos));
+        }
+        File temp = new File(FILE.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<Integer, EwahBitmap> e : result.entrySet()) {
+                out.writeInt(e.getKey());
+                e.getValue().write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        FILE.delete();
+        temp.renameTo(FILE);
+    }
+
+    /**
+     * Return the set of graph positions of the commits reachable from the
+     * commits at STARTS. The walk takes the bitmap of any commit that has
+     * one instead of going below it.
+     */
+    static BitSet reachable(int... starts) {
+        BitSet result = new BitSet(CommitGraph.size());
+        ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+        for (int pos : starts) {
+            if (pos != CommitGraph.NONE && !result.get(pos)) {
+                result.set(pos);
+                stack.push(pos);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int pos = stack.pop();
+            EwahBitmap bitmap = get(pos);
+            if (bitmap != null) {
+                bitmap.orInto(result);
+                continue;
+            }
+            for (int k = 0; k < 2; k += 1) {
+                int parent = CommitGraph.parent(pos, k);
+                if (parent != CommitGraph.NONE && !result.get(parent)) {
+                    result.set(parent);
+                    stack.push(parent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Discard the bitmaps, as when the graph is rebuilt. */
+    static void clear() {
+        FILE.delete();
+        _bitmaps = null;
+    }
+
+    /** Forget the bitmaps read so far, so that they are read again. */
+    static void reload() {
+        _bitmaps = null;
+    }
+
+    /** Return the bitmaps, by graph position, reading FILE if needed. */
+    private static HashMap<Integer, EwahBitmap> bitmaps() {
+        if (_bitmaps == null) {
+            _bitmaps = new HashMap<Integer, EwahBitmap>();
+            if (FILE.isFile()) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(FILE)))) {
+                    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                        clear();
+                        return bitmaps();
+                    }
+                    while (true) {
+                        int pos = in.readInt();
+                        _bitmaps.put(pos, EwahBitmap.read(in));
+                    }
+                } catch (EOFException excp) {
+                    return _bitmaps;
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return _bitmaps;
+    }
+
+    /** The bitmaps read from FILE, by graph position, once read. */
+    private static HashMap<Integer, EwahBitmap> _bitmaps;
+
+}
@@ -0,0 +1,77 @@
+package gitlet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded cache of parsed commits, evicting the least recently used
+ * commit when full. Commits are immutable, so a cached commit never goes
+ * stale. Keeps count of hits and misses.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class CommitCache {
+
+    /** Default number of commits kept. */
+    static final int DEFAULT_CAPACITY = 4096;
+
+    /** A cache holding at most CAPACITY commits. */
+    CommitCache(int capacity) {
+        _capacity = capacity;
+        _commits = new LinkedHashMap<ObjectId, Commit>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<ObjectId, Commit> eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /**
+     * Return the commit with full id ID, reading it from disk on a miss, or
+     * null if there is no such commit.
+     */
+    Commit get(ObjectId id) {
+        Commit commit = _commits.get(id);
+        if (commit != null) {
+            _hits += 1;
+            return commit;
+        }
+        _misses += 1;
+        commit = Commit.load(id);
+        if (commit != null) {
+            _commits.put(id, commit);
+        }
+        return commit;
+    }
+
+    /** Add the newly made COMMIT to the cache. */
+    void put(Commit commit) {
+        _commits.put(commit.getValue(), commit);
+    }
+
+    /** Return the number of commits currently cached. */
+    int size() {
+        return _commits.size();
+    }
+
+    /** Return the number of lookups answered from the cache. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that had to read from disk. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Maximum number of commits kept. */
+    private final int _capacity;
+
+    /** Cached commits, least recently used first. */
+    private final LinkedHashMap<ObjectId, Commit> _commits;
+
+    /** Number of hits and misses so far. */
+    private long _hits, _misses;
+
+}
@@ -0,0 +1,269 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The commit graph: one memory-mapped file, .gitlet/commit-graph, holding
+ * for every commit its id, the positions of its parents in the file, its
+ * generation number and its time. Commits are appended as they are made,
+ * so a commit's parents always precede it. A commit's generation is one
+ * more than the largest generation of its parents, and 1 for the initial
+ * commit, so no commit can reach another of equal or higher generation.
+ * CommitWalk walks the graph without reading commit records. Positions are
+ * looked up by id through the CommitIndex.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class CommitGraph {
+
+    /** The graph file. */
+    static final File FILE = new File(".gitlet/commit-graph");
+
+    /** Marks an absent parent. */
+    static final int NONE = -1;
+
+    /** Magic number at the start of FILE. */
+    private static final int MAGIC = 0x47475048;
+
+    /** Version of the format of FILE. */
+    private static final int VERSION = 1;
+
+    /** Length of the header of FILE. */
+    private static final int HEADER = 8;
+
+    /**
+     * Length of an entry: the id, two parent positions, the generation and
+     * the time.
+     */
+    private static final int ENTRY = ObjectId.LENGTH + 4 + 4 + 4 + 8;
+
+    /** Offsets within an entry of its fields after the id. */
+    private static final int PARENT1 = ObjectId.LENGTH, PARENT2 = PARENT1 + 4,
+        GENERATION = PARENT2 + 4, TIME = GENERATION + 4;
+
+    /** Append the commit COMMIT, whose record has just been written. */
+    static void add(Commit commit) {
+        if (!open()) {
+            rebuild();
+            return;
+        }
+        int parent1 = commit.getParentId() == null
+            ? NONE : position(commit.getParentId());
+        int parent2 = commit.getSecondParentId() == null
+            ? NONE : position(commit.getSecondParentId());
+        int generation = 1;
+        if (parent1 != NONE) {
+            generation = Math.max(generation, generation(parent1) + 1);
+        }
+        if (parent2 != NONE) {
+            generation = Math.max(generation, generation(parent2) + 1);
+        }
+        int pos = size();
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(FILE, true))) {
+            writeEntry(out, commit.getValue(), parent1, parent2, generation,
+                commit.getTime());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        reload();
+        CommitIndex.add(commit.getValue(), pos);
+        CommitBitmaps.added(pos);
+    }
+
+    /** Return the number of commits in the graph. */
+    static int size() {
+        return (map().limit() - HEADER) / ENTRY;
+    }
+
+    /** Return the position of the commit ID, or NONE if there is none. */
+    static int position(ObjectId id) {
+        map();
+        return CommitIndex.position(id);
+    }
+
+    /** Return the id of the commit at POS. */
+    static ObjectId id(int pos) {
+        byte[] raw = new byte[ObjectId.LENGTH];
+        map().get(HEADER + pos * ENTRY, raw);
+        return ObjectId.fromRaw(raw);
+    }
+
+    /** Return the position of the Kth parent (0 or 1) of POS, or NONE. */
+    static int parent(int pos, int k) {
+        return map().getInt(HEADER + pos * ENTRY
+            + (k == 0 ? PARENT1 : PARENT2));
+    }
+
+    /** Return the generation of POS. */
+    static int generation(int pos) {
+        return map().getInt(HEADER + pos * ENTRY + GENERATION);
+    }
+
+    /** Return the time of POS, in seconds since the epoch. */
+    static long time(int pos) {
+        return map().getLong(HEADER + pos * ENTRY + TIME);
+    }
+
+    /** Return the ids of all commits, in position order. */
+    static List<ObjectId> ids() {
+        int size = size();
+        List<ObjectId> result = new ArrayList<ObjectId>(size);
+        for (int pos = 0; pos < size; pos += 1) {
+            result.add(id(pos));
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild the graph, and with it the CommitIndex, from the commit
+     * records in .gitlet/commits.
+     */
+    static void rebuild() {
+        HashMap<ObjectId, Commit> commits = new HashMap<ObjectId, Commit>();
+        for (String name : Utils.plainFilenamesIn(Commit.COMMITS)) {
+            if (ObjectId.isId(name)) {
+                ObjectId id = ObjectId.fromHex(name);
+                commits.put(id, Commit.load(id));
+            }
+        }
+        HashMap<ObjectId, Integer> generations =
+            new HashMap<ObjectId, Integer>();
+        for (ObjectId id : commits.keySet()) {
+            generation(id, commits, generations);
+        }
+        List<ObjectId> order = new ArrayList<ObjectId>(commits.keySet());
+        order.sort(Comparator.comparing((ObjectId id) -> generations.get(id))
+            .thenComparing(Comparator.naturalOrder()));
+        HashMap<ObjectId, Integer> positions = new HashMap<ObjectId, Integer>();
+        File temp = new File(FILE.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (ObjectId id : order) {
+                Commit commit = commits.get(id);
+                positions.put(id, positions.size());
+                writeEntry(out, id,
+                    positions.getOrDefault(commit.getParentId(), NONE),
+                    positions.getOrDefault(commit.getSecondParentId(), NONE),
+                    generations.get(id), commit.getTime());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        FILE.delete();
+        temp.renameTo(FILE);
+        reload();
+        CommitIndex.rebuild();
+        CommitBitmaps.clear();
+    }
+
+    /** Forget the graph read so far, so that it is mapped again. */
+    static void reload() {
+        _map = null;
+    }
+
+    /**
+     * Return the generation of the commit ID among COMMITS, computing and
+     * recording in GENERATIONS those of it and its ancestors as needed.
+     */
+    private static int generation(ObjectId id,
+                                  HashMap<ObjectId, Commit> commits,
+                                  HashMap<ObjectId, Integer> generations) {
+        ArrayDeque<ObjectId> stack = new ArrayDeque<ObjectId>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            ObjectId top = stack.peek();
+            if (generations.containsKey(top)) {
+                stack.pop();
+                continue;
+            }
+            Commit commit = commits.get(top);
+            int generation = 1;
+            boolean ready = true;
+            for (ObjectId parent : new ObjectId[] {
+                    commit.getParentId(), commit.getSecondParentId() }) {
+                if (parent == null) {
+                    continue;
+                } else if (generations.containsKey(parent)) {
+                    generation = Math.max(generation,
+                        generations.get(parent) + 1);
+                } else {
+                    stack.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                generations.put(top, generation);
+                stack.pop();
+            }
+        }
+        return generations.get(id);
+    }
+
+    /**
+     * Write to OUT an entry for the commit ID with parent positions PARENT1
+     * and PARENT2, generation GENERATION and time TIME.
+     */
+    private static void writeEntry(DataOutputStream out, ObjectId id,
+                                   int parent1, int parent2, int generation,
+                                   long time) throws IOException {
+        id.write(out);
+        out.writeInt(parent1);
+        out.writeInt(parent2);
+        out.writeInt(generation);
+        out.writeLong(time);
+    }
+
+    /**
+     * Map FILE if it is not mapped yet. Return false if it is missing or
+     * in an unknown format.
+     */
+    private static boolean open() {
+        if (_map != null) {
+            return true;
+        }
+        if (!FILE.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                StandardOpenOption.READ)) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_map.limit() < HEADER || _map.getInt(0) != MAGIC
+                || _map.getInt(4) != VERSION) {
+            _map = null;
+            return false;
+        }
+        return true;
+    }
+
+    /** Return the mapped graph, rebuilding it first if needed. */
+    private static ByteBuffer map() {
+        if (!open()) {
+            rebuild();
+            open();
+        }
+        return _map;
+    }
+
+    /** The mapped contents of FILE, once read. */
+    private static ByteBuffer _map;
+
+}
@@ -0,0 +1,248 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A persistent, sorted index of the ids of all commits and their positions
+ * in the CommitGraph, used to resolve abbreviated ids and to find commits in
+ * the graph by binary search. The index is a memory-mapped file of sorted
+ * entries plus a short unsorted log of recently added entries, which is
+ * merged into the sorted file once it grows past TAIL_LIMIT entries. Both
+ * can be rebuilt from the commit graph.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class CommitIndex {
+
+    /** The sorted entries. */
+    static final File SORTED = new File(".gitlet/data/commit-ids");
+
+    /**
+     * Entries added since SORTED was written, in the order they were
+     * added.
+     */
+    static final File TAIL = new File(".gitlet/data/commit-ids.tail");
+
+    /** Magic number at the start of SORTED. */
+    private static final int MAGIC = 0x47434958;
+
+    /** Version of the format of SORTED. */
+    private static final int VERSION = 2;
+
+    /** Length of the header of SORTED. */
+    private static final int HEADER = 12;
+
+    /** Length of an entry: an id and a graph position. */
+    private static final int ENTRY = ObjectId.LENGTH + 4;
+
+    /** Most entries kept in TAIL before it is merged into SORTED. */
+    static final int TAIL_LIMIT = 256;
+
+    /** Record that the commit ID is at position POS in the graph. */
+    static void add(ObjectId id, int pos) {
+        if (!open()) {
+            rebuild();
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(TAIL, true))) {
+            id.write(out);
+            out.writeInt(pos);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _tail = null;
+        if (TAIL.length() >= (long) TAIL_LIMIT * ENTRY) {
+            write(entries());
+        }
+    }
+
+    /**
+     * Return the graph position of the commit ID, or CommitGraph.NONE if
+     * there is no such commit.
+     */
+    static int position(ObjectId id) {
+        ByteBuffer sorted = sorted();
+        int lo = 0, hi = sorted.getInt(8) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = idAt(sorted, mid).compareTo(id);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return sorted.getInt(HEADER + mid * ENTRY + ObjectId.LENGTH);
+            }
+        }
+        Integer pos = tail().get(id);
+        return pos == null ? CommitGraph.NONE : pos;
+    }
+
+    /**
+     * Return the ids of up to LIMIT commits whose ids begin with the hex
+     * numeral PREFIX, in sorted order.
+     */
+    static List<ObjectId> matches(String prefix, int limit) {
+        List<ObjectId> result = new ArrayList<ObjectId>();
+        ByteBuffer sorted = sorted();
+        int count = sorted.getInt(8);
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idAt(sorted, mid).comparePrefix(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < count && result.size() < limit; i += 1) {
+            ObjectId id = idAt(sorted, i);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            result.add(id);
+        }
+        for (ObjectId id : tail().keySet()) {
+            if (result.size() < limit && id.startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the ids of all commits, in sorted order. */
+    static List<ObjectId> ids() {
+        return new ArrayList<ObjectId>(entries().keySet());
+    }
+
+    /** Rebuild the index from the commit graph. */
+    static void rebuild() {
+        TreeMap<ObjectId, Integer> entries = new TreeMap<ObjectId, Integer>();
+        List<ObjectId> ids = CommitGraph.ids();
+        for (int pos = 0; pos < ids.size(); pos += 1) {
+            entries.put(ids.get(pos), pos);
+        }
+        write(entries);
+    }
+
+    /** Return all entries, as a map from id to graph position. */
+    private static TreeMap<ObjectId, Integer> entries() {
+        ByteBuffer sorted = sorted();
+        TreeMap<ObjectId, Integer> result = new TreeMap<ObjectId, Integer>();
+        for (int i = 0, count = sorted.getInt(8); i < count; i += 1) {
+            result.put(idAt(sorted, i),
+                sorted.getInt(HEADER + i * ENTRY + ObjectId.LENGTH));
+        }
+        result.putAll(tail());
+        return result;
+    }
+
+    /** Replace the index with ENTRIES and an empty tail. */
+    private static void write(SortedMap<ObjectId, Integer> entries) {
+        File temp = new File(SORTED.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<ObjectId, Integer> e : entries.entrySet()) {
+                e.getKey().write(out);
+                out.writeInt(e.getValue());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        SORTED.delete();
+        temp.renameTo(SORTED);
+        TAIL.delete();
+        reload();
+    }
+
+    /** Forget the index contents read so far, so they are read again. */
+    static void reload() {
+        _sorted = null;
+        _tail = null;
+    }
+
+    /**
+     * Map SORTED if it is not mapped yet. Return false if it is missing or
+     * in an unknown format.
+     */
+    private static boolean open() {
+        if (_sorted != null) {
+            return true;
+        }
+        if (!SORTED.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(SORTED.toPath(),
+                StandardOpenOption.READ)) {
+            _sorted = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_sorted.limit() < HEADER || _sorted.getInt(0) != MAGIC
+                || _sorted.getInt(4) != VERSION) {
+            _sorted = null;
+            return false;
+        }
+        return true;
+    }
+
+    /** Return the mapped contents of SORTED, rebuilding it if needed. */
+    private static ByteBuffer sorted() {
+        if (!open()) {
+            rebuild();
+            open();
+        }
+        return _sorted;
+    }
+
+    /** Return the entries in TAIL. */
+    private static HashMap<ObjectId, Integer> tail() {
+        if (_tail == null) {
+            _tail = new HashMap<ObjectId, Integer>();
+            if (TAIL.isFile()) {
+                ByteBuffer bytes = ByteBuffer.wrap(Utils.readContents(TAIL));
+                byte[] raw = new byte[ObjectId.LENGTH];
+                while (bytes.remaining() >= ENTRY) {
+                    bytes.get(raw);
+                    _tail.put(ObjectId.fromRaw(raw), bytes.getInt());
+                }
+            }
+        }
+        return _tail;
+    }
+
+    /** Return the Ith id of the mapped SORTED file BUFFER. */
+    private static ObjectId idAt(ByteBuffer buffer, int i) {
+        int pos = HEADER + i * ENTRY;
+        byte[] raw = new byte[ObjectId.LENGTH];
+        buffer.get(pos, raw);
+        return ObjectId.fromRaw(raw);
+    }
+
+    /** The mapped contents of SORTED, once read. */
+    private static ByteBuffer _sorted;
+
+    /** The contents of TAIL, once read. */
+    private static HashMap<ObjectId, Integer> _tail;
+
+}
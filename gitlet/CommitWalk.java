@@ -0,0 +1,198 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A walk over the commits reachable from a set of starting commits, newest
+ * first. Commits are identified by their positions in the CommitGraph and
+ * taken from a priority queue ordered by commit time, then by generation,
+ * so that of commits made in the same second, children still come before
+ * their parents. The commits already seen are kept in a bit set with one
+ * bit per commit in the graph. The walk reads only the graph, never commit
+ * records.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class CommitWalk {
+
+    /** Newest commits first, by time, then generation, then position. */
+    static final Comparator<Integer> NEWEST_FIRST =
+        Comparator.comparingLong((Integer pos) -> CommitGraph.time(pos))
+            .thenComparingInt(pos -> CommitGraph.generation(pos))
+            .thenComparingInt(pos -> pos)
+            .reversed();
+
+    /** A walk over nothing so far. */
+    CommitWalk() {
+        _seen = new BitSet(CommitGraph.size());
+    }
+
+    /**
+     * Do not walk past commits whose generation is below GENERATION. None
+     * of their descendants has a lower generation, so this prunes whole
+     * histories that cannot contain a commit of that generation.
+     */
+    void setFloor(int generation) {
+        _floor = generation;
+    }
+
+    /** Start the walk also from the commit at POS. */
+    void start(int pos) {
+        if (pos != CommitGraph.NONE && !_seen.get(pos)) {
+            _seen.set(pos);
+            _queue.add(pos);
+        }
+    }
+
+    /**
+     * Return the position of the next commit of the walk, or
+     * CommitGraph.NONE if there are no more.
+     */
+    int next() {
+        if (_last != CommitGraph.NONE && _expand) {
+            for (int k = 0; k < 2; k += 1) {
+                int parent = CommitGraph.parent(_last, k);
+                if (parent != CommitGraph.NONE
+                        && CommitGraph.generation(parent) >= _floor) {
+                    start(parent);
+                }
+            }
+        }
+        Integer pos = _queue.poll();
+        _last = pos == null ? CommitGraph.NONE : pos;
+        _expand = true;
+        return _last;
+    }
+
+    /**
+     * Do not walk on to the parents of the commit last returned by next,
+     * unless they are reached another way.
+     */
+    void skipParents() {
+        _expand = false;
+    }
+
+    /** Return the positions of the remaining commits of the walk. */
+    List<Integer> toList() {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int pos = next(); pos != CommitGraph.NONE; pos = next()) {
+            result.add(pos);
+        }
+        return result;
+    }
+
+    /**
+     * Return true if the commit at position A is the commit at B or one of
+     * its ancestors. The walk from B stops at A's generation, and at any
+     * commit with a reachability bitmap, which answers for all below it.
+     */
+    static boolean isAncestor(int a, int b) {
+        CommitWalk walk = new CommitWalk();
+        walk.setFloor(CommitGraph.generation(a));
+        walk.start(b);
+        for (int pos = walk.next(); pos != CommitGraph.NONE;
+             pos = walk.next()) {
+            EwahBitmap bitmap = CommitBitmaps.get(pos);
+            if (pos == a || bitmap != null && bitmap.get(a)) {
+                return true;
+            } else if (bitmap != null) {
+                walk.skipParents();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the position of a best common ancestor of the commits at A and
+     * B, one that is not an ancestor of another common ancestor, or
+     * CommitGraph.NONE if they have none. Commits are marked, newest first,
+     * with the sides they are reachable from. A commit reachable from both
+     * is a candidate, and everything below it is marked stale; the walk ends
+     * when only stale commits remain. Since commit times need not agree with
+     * the graph, more than one candidate may be found, and the one of
+     * highest generation, which cannot be an ancestor of another, is chosen.
+     * The queued copies of each commit are counted, and with them the
+     * entries that are not stale, so that the end of the walk is known
+     * without rescanning the queue.
+     */
+    static int mergeBase(int a, int b) {
+        int size = CommitGraph.size();
+        BitSet fromA = new BitSet(size), fromB = new BitSet(size),
+            stale = new BitSet(size);
+        PriorityQueue<Integer> queue =
+            new PriorityQueue<Integer>(NEWEST_FIRST);
+        int[] queued = new int[size];
+        fromA.set(a);
+        fromB.set(b);
+        queue.add(a);
+        queue.add(b);
+        queued[a] += 1;
+        queued[b] += 1;
+        int live = 2;
+        int best = CommitGraph.NONE;
+        while (live > 0) {
+            int pos = queue.poll();
+            queued[pos] -= 1;
+            boolean inA = fromA.get(pos), inB = fromB.get(pos);
+            boolean isStale = stale.get(pos);
+            if (!isStale) {
+                live -= 1;
+            }
+            if (inA && inB && !isStale) {
+                if (best == CommitGraph.NONE || CommitGraph.generation(pos)
+                        > CommitGraph.generation(best)) {
+                    best = pos;
+                }
+                isStale = true;
+                stale.set(pos);
+                live -= queued[pos];
+            }
+            for (int k = 0; k < 2; k += 1) {
+                int parent = CommitGraph.parent(pos, k);
+                if (parent == CommitGraph.NONE
+                        || (fromA.get(parent) || !inA)
+                        && (fromB.get(parent) || !inB)
+                        && (stale.get(parent) || !isStale)) {
+                    continue;
+                }
+                if (inA) {
+                    fromA.set(parent);
+                }
+                if (inB) {
+                    fromB.set(parent);
+                }
+                if (isStale && !stale.get(parent)) {
+                    stale.set(parent);
+                    live -= queued[parent];
+                }
+                queue.add(parent);
+                queued[parent] += 1;
+                if (!stale.get(parent)) {
+                    live += 1;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Commits already queued. */
+    private BitSet _seen;
+
+    /** Commits waiting to be returned, newest first. */
+    private PriorityQueue<Integer> _queue =
+        new PriorityQueue<Integer>(NEWEST_FIRST);
+
+    /** Lowest generation of commits the walk enters. */
+    private int _floor;
+
+    /** The commit last returned by next, or CommitGraph.NONE. */
+    private int _last = CommitGraph.NONE;
+
+    /** False if the parents of _last are not to be walked. */
+    private boolean _expand;
+
+}
@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * Binary deltas between two versions of a file. A delta is a sequence of
+ * instructions that either copy a run of bytes out of the base or insert
+ * literal bytes, so a small edit to a large file yields a small delta.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Delta {
+
+    /** Length of the blocks of the base that are indexed for matching. */
+    private static final int BLOCK = 16;
+
+    /** Instruction that copies a run of bytes from the base. */
+    private static final int COPY = 0;
+
+    /** Instruction that inserts literal bytes. */
+    private static final int INSERT = 1;
+
+    /** Return a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int pending = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            Integer at = blocks.get(hash(target, i));
+            if (at == null || !matches(base, at, target, i)) {
+                i += 1;
+                continue;
+            }
+            int start = at, tStart = i;
+            while (start > 0 && tStart > pending
+                    && base[start - 1] == target[tStart - 1]) {
+                start -= 1;
+                tStart -= 1;
+            }
+            int end = at + BLOCK, tEnd = i + BLOCK;
+            while (end < base.length && tEnd < target.length
+                    && base[end] == target[tEnd]) {
+                end += 1;
+                tEnd += 1;
+            }
+            writeInsert(out, target, pending, tStart);
+            out.write(COPY);
+            writeVarint(out, start);
+            writeVarint(out, end - start);
+            i = tEnd;
+            pending = i;
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Return the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(delta));
+            int[] header = readHeader(in);
+            if (header[0] != base.length) {
+                throw new IllegalArgumentException("delta base mismatch");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(header[1]);
+            apply(ByteBuffer.wrap(base), in, header[1], out);
+            return out.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Read the header of a delta from IN, and return the lengths of its
+     * base and of its result.
+     */
+    static int[] readHeader(DataInputStream in) throws IOException {
+        return new int[] { readVarint(in), readVarint(in) };
+    }
+
+    /**
+     * Apply the instructions of a delta, read from IN after its header, to
+     * BASE, writing the result, which must be LENGTH bytes long, to OUT.
+     * Runs are copied through a bounded buffer, so neither the delta nor
+     * the result is held in memory.
+     */
+    static void apply(ByteBuffer base, DataInputStream in, int length,
+                      OutputStream out) throws IOException {
+        byte[] buffer = new byte[Utils.BUFFER_SIZE];
+        long pos = 0;
+        int op;
+        while ((op = in.read()) >= 0) {
+            if (op != COPY && op != INSERT) {
+                throw new IllegalArgumentException("corrupt delta");
+            }
+            int offset = op == COPY ? readVarint(in) : 0;
+            int size = readVarint(in);
+            if (op == COPY && (offset < 0 || size < 0
+                               || offset > base.limit() - size)) {
+                throw new IllegalArgumentException("corrupt delta");
+            }
+            for (int done = 0; done < size;) {
+                int n = Math.min(buffer.length, size - done);
+                if (op == COPY) {
+                    base.get(offset + done, buffer, 0, n);
+                } else {
+                    in.readFully(buffer, 0, n);
+                }
+                out.write(buffer, 0, n);
+                done += n;
+            }
+            pos += size;
+        }
+        if (pos != length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+    }
+
+    /** Return the hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+
+    /**
+     * Return true if the BLOCK bytes of BASE at B equal those of TARGET at
+     * T.
+     */
+    private static boolean matches(byte[] base, int b, byte[] target, int t) {
+        for (int k = 0; k < BLOCK; k += 1) {
+            if (base[b + k] != target[t + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write an instruction inserting DATA[FROM..TO) to OUT, if nonempty. */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] data,
+                                    int from, int to) {
+        if (to > from) {
+            out.write(INSERT);
+            writeVarint(out, to - from);
+            out.write(data, from, to - from);
+        }
+    }
+
+    /** Write the non-negative VALUE to OUT, seven bits per byte. */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Read a value written by writeVarint from IN. */
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+}
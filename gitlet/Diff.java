@@ -0,0 +1,431 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The line differences between two texts, found by Myers' O(ND) algorithm
+ * in its linear-space form: the middle snake of an optimal edit path is
+ * found by searching from both ends at once, and the halves on either side
+ * of it are compared in turn. Apart from the texts themselves, memory is
+ * linear in their numbers of lines: two vectors of furthest-reaching paths
+ * shared by every step, and one bit per line marking it deleted or
+ * inserted. Where the edit cost of a piece passes a bound that grows as the
+ * square root of its size, the furthest-reaching path found so far is taken
+ * as the split, so that very different texts are not compared in time
+ * proportional to the product of their sizes, at the price of a diff that
+ * may not be minimal.
+ *
+ * Texts are held as their lines' offsets and hashes over a ByteBuffer, so
+ * a working file or raw blob is mapped rather than read into the heap.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Diff {
+
+    /** Lines of unchanged context around each change in a hunk. */
+    static final int CONTEXT = 3;
+
+    /** Leading bytes of a text searched for a NUL to judge it binary. */
+    static final int BINARY_PROBE = 8000;
+
+    /** Least edit cost at which the search for a middle snake gives up. */
+    static final int MIN_COST_LIMIT = 256;
+
+    /** Largest blob, in bytes, whose text is inflated into memory. */
+    static final int MAX_BUFFERED = 1 << 20;
+
+    /** The lines of a text. */
+    static final class Text {
+
+        /** The empty text, which stands for a file that does not exist. */
+        static final Text EMPTY = new Text(ByteBuffer.allocate(0));
+
+        /** The lines of DATA, each ending after a newline or at the end. */
+        Text(ByteBuffer data) {
+            _data = data;
+            int size = data.limit();
+            int[] starts = new int[Math.max(16, size / 32)];
+            int[] hashes = new int[starts.length];
+            int lines = 0, hash = 0;
+            boolean binary = false;
+            for (int i = 0, start = 0; i < size; i += 1) {
+                byte b = data.get(i);
+                hash = 31 * hash + b;
+                binary |= b == 0 && i < BINARY_PROBE;
+                if (b == '\n' || i == size - 1) {
+                    if (lines + 1 >= starts.length) {
+                        starts = Arrays.copyOf(starts, 2 * starts.length);
+                        hashes = Arrays.copyOf(hashes, starts.length);
+                    }
+                    starts[lines] = start;
+                    hashes[lines] = hash;
+                    lines += 1;
+                    start = i + 1;
+                    hash = 0;
+                }
+            }
+            starts[lines] = size;
+            _starts = starts;
+            _hashes = hashes;
+            _size = lines;
+            _binary = binary;
+        }
+
+        /** Return the text of FILE, which is mapped rather than read. */
+        static Text of(File file) {
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(file
+                            + " is too large to compare");
+                }
+                return new Text(channel.map(FileChannel.MapMode.READ_ONLY,
+                        0, channel.size()));
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /**
+         * Return the text of blob ID, or EMPTY if ID is null. Raw blobs are
+         * mapped. Others are inflated into memory if they are at most
+         * MAX_BUFFERED bytes long, and otherwise into a temporary file that
+         * is mapped, so that a large blob need not fit in the heap.
+         */
+        static Text of(ObjectId id) {
+            if (id == null) {
+                return EMPTY;
+            } else if (ObjectStore.isRaw(id)) {
+                return of(ObjectStore.rawFile(id));
+            }
+            try (InputStream in = ObjectStore.open(id)) {
+                byte[] head = in.readNBytes(MAX_BUFFERED + 1);
+                if (head.length <= MAX_BUFFERED) {
+                    return new Text(ByteBuffer.wrap(head));
+                }
+                File file = File.createTempFile("gitlet", ".diff");
+                try {
+                    try (OutputStream out = new FileOutputStream(file)) {
+                        out.write(head);
+                        Utils.copy(in, out);
+                    }
+                    return of(file);
+                } finally {
+                    if (!file.delete()) {
+                        file.deleteOnExit();
+                    }
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Return the number of lines. */
+        int size() {
+            return _size;
+        }
+
+        /** Return true if this looks like binary data rather than text. */
+        boolean isBinary() {
+            return _binary;
+        }
+
+        /** Return true if line I equals line J of OTHER. */
+        boolean equal(int i, Text other, int j) {
+            if (_hashes[i] != other._hashes[j]) {
+                return false;
+            }
+            int start = _starts[i], length = _starts[i + 1] - start;
+            int otherStart = other._starts[j];
+            if (other._starts[j + 1] - otherStart != length) {
+                return false;
+            }
+            for (int k = 0; k < length; k += 1) {
+                if (_data.get(start + k) != other._data.get(otherStart + k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Write line I to OUT after PREFIX, followed by a note if it is the
+         * last line and lacks a newline.
+         */
+        void write(PrintStream out, char prefix, int i) {
+            out.write(prefix);
+            int start = _starts[i], length = _starts[i + 1] - start;
+            byte[] buffer = new byte[Math.min(length, Utils.BUFFER_SIZE)];
+            for (int done = 0; done < length; done += buffer.length) {
+                int n = Math.min(buffer.length, length - done);
+                _data.get(start + done, buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+            if (_data.get(start + length - 1) != '\n') {
+                out.write('\n');
+                out.println("\\ No newline at end of file");
+            }
+        }
+
+        /** The contents. */
+        private final ByteBuffer _data;
+
+        /** The offset of each line, and of the end of the last. */
+        private final int[] _starts;
+
+        /** The hash of each line. */
+        private final int[] _hashes;
+
+        /** Number of lines. */
+        private final int _size;
+
+        /** True if a NUL is among the first BINARY_PROBE bytes. */
+        private final boolean _binary;
+    }
+
+    /** The differences from text A to text B. */
+    Diff(Text a, Text b) {
+        _a = a;
+        _b = b;
+        _deleted = new BitSet(a.size());
+        _inserted = new BitSet(b.size());
+        _offset = (a.size() + b.size() + 1) / 2 + 1;
+        _forward = new int[2 * _offset + 1];
+        _backward = new int[2 * _offset + 1];
+        compare();
+    }
+
+    /**
+     * Mark the deleted and inserted lines, comparing pieces of the texts
+     * from an explicit stack so that deep splits cannot overflow the Java
+     * stack.
+     */
+    private void compare() {
+        ArrayDeque<int[]> pieces = new ArrayDeque<int[]>();
+        pieces.push(new int[] { 0, _a.size(), 0, _b.size() });
+        while (!pieces.isEmpty()) {
+            int[] piece = pieces.pop();
+            int aLo = piece[0], aHi = piece[1], bLo = piece[2], bHi = piece[3];
+            while (aLo < aHi && bLo < bHi && _a.equal(aLo, _b, bLo)) {
+                aLo += 1;
+                bLo += 1;
+            }
+            while (aLo < aHi && bLo < bHi && _a.equal(aHi - 1, _b, bHi - 1)) {
+                aHi -= 1;
+                bHi -= 1;
+            }
+            if (aLo == aHi || bLo == bHi || !split(aLo, aHi, bLo, bHi)) {
+                _deleted.set(aLo, aHi);
+                _inserted.set(bLo, bHi);
+                continue;
+            }
+            int x = _splitX, y = _splitY;
+            pieces.push(new int[] { x, aHi, y, bHi });
+            pieces.push(new int[] { aLo, x, bLo, y });
+        }
+    }
+
+    /**
+     * Find where to split the piece of lines [ALO, AHI) of A and [BLO, BHI)
+     * of B, whose first and last lines differ, and leave the point in
+     * _splitX and _splitY. The point is on the middle snake where the
+     * searches from either end meet, but never a corner of the piece: if
+     * one search has crossed the whole piece, the point before its last
+     * edit is taken instead. Return false if there is no common line to
+     * split at.
+     */
+    private boolean split(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo, delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int maxD = (n + m + 1) / 2;
+        int limit = Math.max(MIN_COST_LIMIT, (int) Math.sqrt(n + m));
+        int[] vf = _forward, vb = _backward;
+        int o = _offset;
+        Arrays.fill(vf, o - maxD, o + maxD + 1, -1);
+        Arrays.fill(vb, o - maxD, o + maxD + 1, -1);
+        vf[o + 1] = 0;
+        vb[o + 1] = 0;
+        int k1Start = 0, k1End = 0, k2Start = 0, k2End = 0;
+        int bestX = 0, bestY = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            if (d > limit && bestX + bestY > 0) {
+                _splitX = aLo + bestX;
+                _splitY = bLo + bestY;
+                return true;
+            }
+            for (int k = -d + k1Start; k <= d - k1End; k += 2) {
+                boolean down = k == -d
+                    || k != d && vf[o + k - 1] < vf[o + k + 1];
+                int x = down ? vf[o + k + 1] : vf[o + k - 1] + 1;
+                int y = x - k;
+                int px = down ? x : x - 1, py = down ? y - 1 : y;
+                while (x < n && y < m && _a.equal(aLo + x, _b, bLo + y)) {
+                    x += 1;
+                    y += 1;
+                }
+                vf[o + k] = x;
+                if (x > n) {
+                    k1End += 2;
+                } else if (y > m) {
+                    k1Start += 2;
+                } else {
+                    if (x + y > bestX + bestY && (x < n || y < m)) {
+                        bestX = x;
+                        bestY = y;
+                    }
+                    int k2 = delta - k;
+                    if (odd && Math.abs(k2) < d && vb[o + k2] >= 0
+                            && x >= n - vb[o + k2]) {
+                        boolean end = x == n && y == m;
+                        _splitX = aLo + (end ? px : x);
+                        _splitY = bLo + (end ? py : y);
+                        return true;
+                    }
+                }
+            }
+            for (int k = -d + k2Start; k <= d - k2End; k += 2) {
+                boolean down = k == -d
+                    || k != d && vb[o + k - 1] < vb[o + k + 1];
+                int x = down ? vb[o + k + 1] : vb[o + k - 1] + 1;
+                int y = x - k;
+                int px = down ? x : x - 1, py = down ? y - 1 : y;
+                while (x < n && y < m
+                       && _a.equal(aHi - 1 - x, _b, bHi - 1 - y)) {
+                    x += 1;
+                    y += 1;
+                }
+                vb[o + k] = x;
+                if (x > n) {
+                    k2End += 2;
+                } else if (y > m) {
+                    k2Start += 2;
+                } else {
+                    int k1 = delta - k;
+                    if (!odd && Math.abs(k1) <= d && vf[o + k1] >= 0
+                            && vf[o + k1] >= n - x) {
+                        boolean start = vf[o + k1] == 0 && k1 == 0;
+                        _splitX = start ? aHi - px : aLo + vf[o + k1];
+                        _splitY = start ? bHi - py : bLo + vf[o + k1] - k1;
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the changes, in order, each as the range [START, END) of
+     * lines of A it deletes followed by the range of lines of B it inserts.
+     */
+    List<int[]> changes() {
+        List<int[]> result = new ArrayList<int[]>();
+        int n = _a.size(), m = _b.size();
+        for (int i = 0, j = 0; i < n || j < m;) {
+            if (i < n && _deleted.get(i) || j < m && _inserted.get(j)) {
+                int i0 = i, j0 = j;
+                i = Math.min(n, _deleted.nextClearBit(i));
+                j = Math.min(m, _inserted.nextClearBit(j));
+                result.add(new int[] { i0, i, j0, j });
+            } else {
+                i += 1;
+                j += 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write the differences to OUT in unified format, with CONTEXT lines
+     * of context, as the change to NAME. OLD and NEW say whether the file
+     * exists on either side. Nothing is written if the texts are equal.
+     */
+    void write(PrintStream out, String name, boolean old, boolean now) {
+        List<int[]> changes = changes();
+        if (changes.isEmpty() && old == now) {
+            return;
+        }
+        out.println("diff a/" + name + " b/" + name);
+        if (_a.isBinary() || _b.isBinary()) {
+            out.println("Binary files " + (old ? "a/" + name : "/dev/null")
+                    + " and " + (now ? "b/" + name : "/dev/null")
+                    + " differ");
+            return;
+        }
+        out.println("--- " + (old ? "a/" + name : "/dev/null"));
+        out.println("+++ " + (now ? "b/" + name : "/dev/null"));
+        for (int first = 0; first < changes.size();) {
+            int last = first;
+            while (last + 1 < changes.size() && changes.get(last + 1)[0]
+                   - changes.get(last)[1] <= 2 * CONTEXT) {
+                last += 1;
+            }
+            int[] from = changes.get(first), to = changes.get(last);
+            int aStart = Math.max(0, from[0] - CONTEXT);
+            int bStart = from[2] - (from[0] - aStart);
+            int aEnd = Math.min(_a.size(), to[1] + CONTEXT);
+            int bEnd = to[3] + (aEnd - to[1]);
+            out.println("@@ -" + range(aStart, aEnd) + " +"
+                    + range(bStart, bEnd) + " @@");
+            int i = aStart;
+            for (int c = first; c <= last; c += 1) {
+                int[] change = changes.get(c);
+                for (; i < change[0]; i += 1) {
+                    _a.write(out, ' ', i);
+                }
+                for (; i < change[1]; i += 1) {
+                    _a.write(out, '-', i);
+                }
+                for (int j = change[2]; j < change[3]; j += 1) {
+                    _b.write(out, '+', j);
+                }
+            }
+            for (; i < aEnd; i += 1) {
+                _a.write(out, ' ', i);
+            }
+            first = last + 1;
+        }
+    }
+
+    /** Return the range [START, END) of lines as a hunk header shows it. */
+    private static String range(int start, int end) {
+        if (end - start == 1) {
+            return Integer.toString(end);
+        } else if (end == start) {
+            return start + ",0";
+        }
+        return (start + 1) + "," + (end - start);
+    }
+
+    /** The texts compared. */
+    private final Text _a, _b;
+
+    /** The lines of _a deleted and of _b inserted. */
+    private final BitSet _deleted, _inserted;
+
+    /**
+     * The furthest-reaching paths from the start and from the end of the
+     * piece being split, by diagonal plus _offset.
+     */
+    private final int[] _forward, _backward;
+
+    /** The index in _forward and _backward of diagonal 0. */
+    private final int _offset;
+
+    /** The point at which split last said to split. */
+    private int _splitX, _splitY;
+
+}
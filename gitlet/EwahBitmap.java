@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable bitmap compressed in the manner of EWAH: its 64-bit words
+ * are stored as groups, each a marker word followed by literal words. A
+ * marker records a run of "clean" words, all zeros or all ones, by its fill
+ * bit and length, and counts the literal (mixed) words that follow it. A
+ * reachability bitmap over a long linear history is mostly one long run of
+ * ones, so it takes a few words however many commits it covers.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+final class EwahBitmap {
+
+    /** Longest run of clean words one marker can record. */
+    private static final int MAX_RUN = Integer.MAX_VALUE;
+
+    /** Bit of a marker holding the value of its clean words. */
+    private static final long FILL_BIT = 1L << 63;
+
+    /** Words of a clean run of ones. */
+    private static final long ONES = -1L;
+
+    /** A bitmap of the compressed words WORDS. */
+    private EwahBitmap(long[] words) {
+        _words = words;
+    }
+
+    /** Return the compressed form of BITS. */
+    static EwahBitmap of(BitSet bits) {
+        long[] raw = bits.toLongArray();
+        long[] out = new long[4];
+        int n = 0;
+        int i = 0;
+        while (i < raw.length) {
+            long fill = raw[i] == ONES ? ONES : 0;
+            int run = 0;
+            while (i < raw.length && isClean(raw[i]) && raw[i] == fill
+                   && run < MAX_RUN) {
+                run += 1;
+                i += 1;
+            }
+            int start = i;
+            while (i < raw.length && !isClean(raw[i])) {
+                i += 1;
+            }
+            int literals = i - start;
+            if (n + 1 + literals > out.length) {
+                out = Arrays.copyOf(out, Math.max(2 * out.length,
+                        n + 1 + literals));
+            }
+            out[n] = (fill == ONES ? FILL_BIT : 0) | ((long) run << 32)
+                | (literals & 0xffffffffL);
+            System.arraycopy(raw, start, out, n + 1, literals);
+            n += 1 + literals;
+        }
+        return new EwahBitmap(Arrays.copyOf(out, n));
+    }
+
+    /** Read a bitmap written by write from IN. */
+    static EwahBitmap read(DataInput in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i += 1) {
+            words[i] = in.readLong();
+        }
+        return new EwahBitmap(words);
+    }
+
+    /** Write this bitmap to OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(_words.length);
+        for (long word : _words) {
+            out.writeLong(word);
+        }
+    }
+
+    /** Return true if bit K is set. */
+    boolean get(int k) {
+        int target = k >>> 6;
+        int word = 0;
+        for (int i = 0; i < _words.length; ) {
+            long marker = _words[i];
+            int run = runLength(marker);
+            int literals = literalCount(marker);
+            if (target < word + run) {
+                return (marker & FILL_BIT) != 0;
+            }
+            word += run;
+            if (target < word + literals) {
+                return (_words[i + 1 + target - word] & (1L << k)) != 0;
+            }
+            word += literals;
+            i += 1 + literals;
+        }
+        return false;
+    }
+
+    /** Set in DEST every bit set in this bitmap. */
+    void orInto(BitSet dest) {
+        int word = 0;
+        for (int i = 0; i < _words.length; ) {
+            long marker = _words[i];
+            int run = runLength(marker);
+            int literals = literalCount(marker);
+            if ((marker & FILL_BIT) != 0 && run > 0) {
+                dest.set(word * 64, (word + run) * 64);
+            }
+            word += run;
+            for (int j = 0; j < literals; j += 1, word += 1) {
+                long bits = _words[i + 1 + j];
+                while (bits != 0) {
+                    int b = Long.numberOfTrailingZeros(bits);
+                    dest.set(word * 64 + b);
+                    bits &= bits - 1;
+                }
+            }
+            i += 1 + literals;
+        }
+    }
+
+    /** Return the number of bits set. */
+    int cardinality() {
+        int count = 0;
+        for (int i = 0; i < _words.length; ) {
+            long marker = _words[i];
+            int literals = literalCount(marker);
+            if ((marker & FILL_BIT) != 0) {
+                count += runLength(marker) * 64;
+            }
+            for (int j = 1; j <= literals; j += 1) {
+                count += Long.bitCount(_words[i + j]);
+            }
+            i += 1 + literals;
+        }
+        return count;
+    }
+
+    /** Return the number of compressed words. */
+    int sizeInWords() {
+        return _words.length;
+    }
+
+    /** Return true if WORD is all zeros or all ones. */
+    private static boolean isClean(long word) {
+        return word == 0 || word == ONES;
+    }
+
+    /** Return the length of the clean run recorded by MARKER. */
+    private static int runLength(long marker) {
+        return (int) ((marker & ~FILL_BIT) >>> 32);
+    }
+
+    /** Return the number of literal words following MARKER. */
+    private static int literalCount(long marker) {
+        return (int) marker;
+    }
+
+    /** The compressed words. */
+    private final long[] _words;
+
+}
@@ -1,40 +1,79 @@
 package gitlet;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Driver class for Gitlet, the tiny stupid version-control system.
  *
  * @author Kevin Vo and Christian Lista-Nicoloso
  */
-public class Gitlet implements Serializable {
+public class Gitlet {
     /**
-     * The list of all commits ever made.
+     * The file recording the current branch and the id of the current
+     * commit.
      */
-    private HashMap<String, Commit> _allCommitsEverMade =
-            new HashMap<String, Commit>();
+    private static final File HEAD = new File(".gitlet/data/HEAD");
 
     /**
-     * The map of files removed.
+     * The file recording the files marked for removal.
      */
-    private HashMap<String, String> _rmFiles = new HashMap<String, String>();
+    private static final File REMOVED = new File(".gitlet/data/removed");
 
     /**
-     * The map of all branches.
+     * The single serialized file in which older versions of gitlet kept
+     * the whole system. Repositories in that format are not read.
      */
-    private HashMap<String, Commit> _branches = new HashMap<String, Commit>();
+    private static final File LEGACY_DATA = new File(".gitlet/data/data");
 
     /**
-     * The name of the current branch. Acts as a key for _branches.
+     * Version of the format of REMOVED.
+     */
+    private static final int REMOVED_VERSION = 1;
+
+    /**
+     * Fewest commits whose messages find scans in parallel.
+     */
+    private static final int PARALLEL_SCAN = 256;
+
+    /**
+     * The tracked and staged files.
+     */
+    private Index _index = new Index();
+
+    /**
+     * The map of files removed.
+     */
+    private HashMap<String, ObjectId> _rmFiles =
+            new HashMap<String, ObjectId>();
+
+    /**
+     * The name of the current branch. Acts as a key for Refs.
      */
     private String _currentBranch;
 
@@ -51,13 +90,44 @@ public class Gitlet implements Serializable {
     }
 
     /**
-     * Runs this Gitlet system by constructing from a serialized file with
-     * argument ARGS.
+     * The current branch, head commit id and removed files as last read
+     * from or written to disk, so that only what changed is written back.
+     */
+    private String _savedBranch;
+
+    /** See _savedBranch. */
+    private ObjectId _savedHead;
+
+    /** See _savedBranch. */
+    private HashMap<String, ObjectId> _savedRmFiles =
+            new HashMap<String, ObjectId>();
+
+    /**
+     * Runs this Gitlet system by constructing from the files in .gitlet with
+     * argument ARGS, or has the server run ARGS if one is running here, or
+     * runs a batch of commands if ARGS begin with --batch. ARGS may be
+     * preceded by --stats, to print statistics after the output.
      */
     public static void main(String[] args) {
-        Gitlet g = reconstruct();
-        interpret(args, g);
-        g.serialize();
+        String[] command = Stats.command(args);
+        Stats.enable(command.length < args.length);
+        boolean batch = command.length > 0 && command[0].equals("--batch");
+        if (!batch && Server.forward(args)) {
+            return;
+        }
+        args = command;
+        Stats.Command event = new Stats.Command(args);
+        if (batch) {
+            Batch.run(args);
+        } else if (args.length == 1 && args[0].equals("serve") && isInit()) {
+            Server.serve();
+        } else {
+            Gitlet g = reconstruct();
+            interpret(args, g);
+            g.serialize();
+        }
+        event.finish();
+        Stats.report(System.out);
     }
 
     /**
@@ -78,6 +148,11 @@ public class Gitlet implements Serializable {
                 && !args[0].equals("init")) {
             System.out.println("Not in an initialized gitlet directory");
             return;
+        } else if (isInit() && git._head == null
+                   && (!args[0].equals("init") || LEGACY_DATA.exists())) {
+            System.out.println("Unsupported repository format: .gitlet was"
+                    + " made by an older gitlet. Move it aside and run init.");
+            return;
         }
         switch (args[0]) {
         case "init":
@@ -108,7 +183,7 @@ public class Gitlet implements Serializable {
             git.globalLog();
             return;
         case "find":
-            git.find(args[1]);
+            git.find(Arrays.copyOfRange(args, 1, args.length));
             return;
         case "rm-branch":
             git.removeBranch(args[1]);
@@ -119,6 +194,19 @@ public class Gitlet implements Serializable {
         case "merge":
             git.merge(args[1]);
             return;
+        case "gc":
+        case "repack":
+            git.gc(args.length == 2);
+            return;
+        case "rev-list":
+            git.revList(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        case "serve":
+            System.out.println("No server is running.");
+            return;
+        case "diff":
+            git.diff(Arrays.copyOfRange(args, 1, args.length));
+            return;
         default:
             System.out.println("No command with that name exists.");
         }
@@ -134,10 +222,22 @@ public class Gitlet implements Serializable {
         case "global-log":
         case "status":
             return args.length == 1;
+        case "gc":
+        case "repack":
+            return args.length == 1
+                || args.length == 2 && args[1].equals("--prune");
+        case "rev-list":
+            return args.length >= 2;
+        case "serve":
+            return args.length == 1
+                || args.length == 2 && args[1].equals("--stop");
+        case "find":
+            return args.length == 2 || args.length == 3;
+        case "diff":
+            return args.length <= 3;
         case "add":
         case "commit":
         case "rm":
-        case "find":
         case "branch":
         case "rm-branch":
         case "reset":
@@ -151,28 +251,15 @@ public class Gitlet implements Serializable {
     }
 
     /**
-     * Returns the shared anscestor between COMMIT1 and COMMIT2.
+     * Returns the shared anscestor between COMMIT1 and COMMIT2 that is
+     * nearest to both, found in the commit graph.
      */
     private Commit getSplitPoint(Commit commit1, Commit commit2) {
-        ArrayList<Commit> parents1 = new ArrayList<Commit>();
-        Commit pointer = commit1.getParent();
-        while (pointer != null) {
-            parents1.add(pointer);
-            pointer = pointer.getParent();
-        }
-        pointer = commit2.getParent();
-        int i = 0;
-        while (pointer != null || i == parents1.size() - 1) {
-            if (pointer == commit1) {
-                return commit1;
-            }
-            if (pointer.getValue() == parents1.get(i).getValue()) {
-                return pointer;
-            }
-            pointer = pointer.getParent();
-            i += 1;
-        }
-        return null;
+        int base = CommitWalk.mergeBase(
+            CommitGraph.position(commit1.getValue()),
+            CommitGraph.position(commit2.getValue()));
+        return base == CommitGraph.NONE
+            ? null : Commit.read(CommitGraph.id(base));
     }
 
     /**
@@ -198,18 +285,20 @@ public class Gitlet implements Serializable {
     }
 
     /**
-     * Writes a conflict file into the working directory from FILE1 and FILE2
-     * to FILENAME.
+     * Writes a conflict file into the working directory from blobs ID1 and
+     * ID2 to FILENAME.
      */
-    private void writeConflict(String fileName, File file1, File file2) {
+    private void writeConflict(String fileName, ObjectId id1,
+                               ObjectId id2) {
         byte[] currB = null;
         byte[] targB = null;
-        if (file1 != null) {
-            currB = Utils.readContents(file1);
+        if (id1 != null) {
+            currB = ObjectStore.read(id1);
         }
-        if (file2 != null) {
-            targB = Utils.readContents(file2);
+        if (id2 != null) {
+            targB = ObjectStore.read(id2);
         }
+        ObjectStore.prepareWorkingFile(new File(fileName));
         Utils.writeContents(new File(fileName), formatMerge(currB, targB));
     }
 
@@ -222,11 +311,10 @@ public class Gitlet implements Serializable {
                 + "delete it or add it first.");
             return;
         }
-        File stage = new File(".gitlet/stage");
-        if (stage.listFiles().length > 0 || _rmFiles.size() > 0) {
+        if (!_index.stagedNames().isEmpty() || _rmFiles.size() > 0) {
             System.out.println("You have uncommitted changes.");
         }
-        if (!_branches.containsKey(targetBranch)) {
+        if (!Refs.exists(targetBranch)) {
             System.out.println("A branch with that name does not exist.");
             return;
         }
@@ -234,85 +322,78 @@ public class Gitlet implements Serializable {
             System.out.println("Cannot merge a branch with itself.");
             return;
         }
-        Commit targetCommit = _branches.get(targetBranch);
-        Commit splitPoint = getSplitPoint(_head, targetCommit);
-        if (splitPoint == _branches.get(targetCommit)) {
+        Commit targetCommit = Refs.get(targetBranch);
+        int headPos = CommitGraph.position(_head.getValue());
+        int targetPos = CommitGraph.position(targetCommit.getValue());
+        if (CommitWalk.isAncestor(targetPos, headPos)) {
             System.out.println("Given branch is an ancestor of the current "
                 + "branch.");
             return;
         }
-        if (splitPoint == _head) {
+        if (CommitWalk.isAncestor(headPos, targetPos)) {
             _head = targetCommit;
             System.out.println("Current branch fast-forwarded.");
             return;
         }
-        if (mergeHelper(targetBranch)) {
+        if (mergeHelper(targetCommit, getSplitPoint(_head, targetCommit))) {
             System.out.println("Encountered a merge conflict.");
         } else {
             String log = "Merged " + _currentBranch + " with "
                 + targetBranch + ".";
-            commit(new String[] {"commit", log});
+            commit(log, targetCommit);
         }
     }
 
     /**
-     * Merges files from TARGETBRANCH and returns whether there was a conflict.
+     * Merges files from TARGETHEAD, whose split point with the current head
+     * is SPLITPOINT, and returns whether there was a conflict. Only the
+     * paths changed since SPLITPOINT on either side are examined, and
+     * subtrees unchanged on a side are not read.
      */
-    private boolean mergeHelper(String targetBranch) {
-        Commit targetHead = _branches.get(targetBranch);
-        Commit splitPoint = getSplitPoint(_head, targetHead);
-        HashMap<String, String> splitFiles = splitPoint.getFiles();
-        HashMap<String, String> targetFiles = targetHead.getFiles();
-        HashMap<String, String> currentFiles = _head.getFiles();
+    private boolean mergeHelper(Commit targetHead, Commit splitPoint) {
+        TreeMap<String, ObjectId[]> targetChanges =
+            Tree.diff(splitPoint.getTree(), targetHead.getTree());
+        TreeMap<String, ObjectId[]> currentChanges =
+            Tree.diff(splitPoint.getTree(), _head.getTree());
+        TreeSet<String> paths = new TreeSet<String>(targetChanges.keySet());
+        paths.addAll(currentChanges.keySet());
         boolean conflict = false;
-        for (String fileName : targetFiles.keySet()) {
-            if (!currentFiles.containsKey(fileName)) {
-                if (!splitFiles.containsKey(fileName)) {
-                    fileCheckout(targetHead.getValue(), fileName);
-                    add(fileName);
-                } else if (!splitFiles.get(fileName).equals(targetFiles.get(
-                    fileName))) {
-                    File targ = new File(".gitlet/commits/"
-                        + targetHead.getValue() + "/" + fileName);
-                    writeConflict(fileName, null, targ);
-                }
-            } else if (splitFiles.containsKey(fileName)
-                        && currentFiles.containsKey(fileName)) {
-                if (splitFiles.get(fileName).equals(
-                        currentFiles.get(fileName))) {
-                    fileCheckout(targetHead.getValue(), fileName);
+        for (String fileName : paths) {
+            ObjectId[] targetChange = targetChanges.get(fileName);
+            ObjectId[] currentChange = currentChanges.get(fileName);
+            ObjectId split = targetChange != null
+                ? targetChange[0] : currentChange[0];
+            ObjectId target = targetChange != null ? targetChange[1] : split;
+            ObjectId curr = currentChange != null ? currentChange[1] : split;
+            if (target != null && curr == null) {
+                if (split == null) {
+                    ObjectStore.checkout(target, new File(fileName));
                     add(fileName);
+                } else if (!split.equals(target)) {
+                    writeConflict(fileName, null, target);
                 }
+            } else if (target != null && split != null
+                       && split.equals(curr)) {
+                ObjectStore.checkout(target, new File(fileName));
+                add(fileName);
             }
-        }
-        for (String fileName : currentFiles.keySet()) {
-            File curr = new File(".gitlet/commits/"
-                        + _head.getValue() + "/" + fileName);
-            if (splitFiles.containsKey(fileName)
-                    && !targetFiles.containsKey(fileName)) {
-                if (splitFiles.get(fileName).equals(currentFiles.get(
-                        fileName))) {
-                    new File(fileName).delete();
-                    new File(".gitlet/" + fileName).delete();
+            if (curr == null) {
+                continue;
+            }
+            if (split != null && target == null) {
+                if (split.equals(curr)) {
+                    deleteFile(fileName);
+                    _index.untrack(fileName);
                 } else {
                     writeConflict(fileName, curr, null);
                     conflict = true;
                 }
-            } else if ((splitFiles.containsKey(fileName)
-                    && targetFiles.containsKey(fileName)
-                    && !splitFiles.get(fileName).equals(
-                        targetFiles.get(fileName))
-                    && !currentFiles.get(fileName).equals(
-                            targetFiles.get(fileName))
-                    && !splitFiles.get(fileName).equals(
-                            currentFiles.get(fileName)))
-                    || (!splitFiles.containsKey(fileName)
-                    && targetFiles.containsKey(fileName)
-                    && !currentFiles.get(fileName).equals(
-                            targetFiles.get(fileName)))) {
-                File targ = new File(".gitlet/commits/"
-                        + targetHead.getValue() + "/" + fileName);
-                writeConflict(fileName, curr, targ);
+            } else if ((split != null && target != null
+                    && !split.equals(target) && !curr.equals(target)
+                    && !split.equals(curr))
+                    || (split == null && target != null
+                    && !curr.equals(target))) {
+                writeConflict(fileName, curr, target);
                 conflict = true;
             }
         }
@@ -333,26 +414,21 @@ public class Gitlet implements Serializable {
      * error message.
      */
     private boolean hasOverwrite(Commit commit) {
-        File repo = new File(".");
         String msg = "There is an untracked file in the way; delete it or add"
                 + " it first.";
-        for (String fileName : repo.list()) {
-            if (new File(fileName).isDirectory()) {
-                continue;
-            }
-            if (!new File(".gitlet/" + fileName).exists()
+        for (String fileName : workingFiles(commit)) {
+            if (!_index.isTracked(fileName)
                     && commit.getFiles().containsKey(fileName)
-                    && !new File(".gitlet/stage/" + fileName).exists()) {
-                String fileVal = Utils.sha1(Utils.readContents(new File(
-                        fileName)));
+                    && !_index.isStaged(fileName)) {
+                ObjectId fileVal = Utils.sha1(new File(fileName));
                 if (!fileVal.equals(commit.getFiles().get(fileName))) {
                     System.out.println(msg);
                     return true;
                 }
             }
-            if (!new File(".gitlet/" + fileName).exists()
+            if (!_index.isTracked(fileName)
                     && !commit.getFiles().containsKey(fileName)
-                    && !new File(".gitlet/stage/" + fileName).exists()) {
+                    && !_index.isStaged(fileName)) {
                 System.out.println(msg);
                 return true;
             }
@@ -365,12 +441,12 @@ public class Gitlet implements Serializable {
      * commit.
      */
     private boolean hasUntracked() {
-        File repo = new File(".");
-        for (File file : repo.listFiles()) {
-            if (new File(".gitlet/stage/" + file.getName()).exists()) {
+        for (String name : workingFiles(null)) {
+            if (_index.isStaged(name)) {
                 continue;
             }
-            if (!file.isDirectory() && !_head.contains(file)) {
+            ObjectId id = _head.getFiles().get(name);
+            if (id == null || !id.equals(_index.workingId(name))) {
                 return true;
             }
         }
@@ -382,74 +458,343 @@ public class Gitlet implements Serializable {
      * that are not present in the given file.
      */
     private void reset(String id) {
-        String fullID = getID(id);
+        ObjectId fullID = getID(id);
         if (fullID == null) {
-            System.out.println("No commit with that id exists.");
             return;
         }
-        Commit targetCommit = _allCommitsEverMade.get(fullID);
+        Commit targetCommit = Commit.read(fullID);
         if (hasOverwrite(targetCommit)) {
             return;
         }
-        clearDirectory(".");
-        for (File file : new File(".gitlet/stage").listFiles()) {
-            Utils.writeContents(new File(file.getName()),
-                Utils.readContents(file));
+        HashMap<String, ObjectId> files = new HashMap<String, ObjectId>();
+        for (String name : _index.stagedNames()) {
+            files.put(name, _index.staged(name));
         }
-        clearDirectory(".gitlet/stage");
-        clearDirectory(".gitlet");
+        files.putAll(targetCommit.getFiles());
+        checkoutFiles(files, targetCommit);
+        _index.clearStaged();
+        _index.clearTracked();
         _rmFiles.clear();
-        for (String fileName : targetCommit.getFiles().keySet()) {
-            fileCheckout(id, fileName);
-        }
         _head = targetCommit;
     }
 
-    /** Removes all files from DIR and ignores directories. */
-    private void clearDirectory(String dir) {
-        File directory = new File(dir);
-        if (directory.isDirectory()) {
-            for (File file : directory.listFiles()) {
-                if (file.isFile()) {
-                    file.delete();
+    /**
+     * Makes the working files match FILES, which maps paths to blobs,
+     * touching only those that differ. The working files that workingFiles
+     * lists for COMMIT and FILES lacks are deleted. Of the paths of FILES,
+     * only those whose working copies are missing or hold another blob,
+     * as judged from the index's stat data where it can be, are written;
+     * the rest keep their modification times.
+     */
+    private void checkoutFiles(Map<String, ObjectId> files, Commit commit) {
+        for (String name : workingFiles(commit)) {
+            if (!files.containsKey(name)) {
+                deleteFile(name);
+            }
+        }
+        List<String> names = new ArrayList<String>(files.keySet());
+        List<ObjectId> working = _index.workingIds(names);
+        HashMap<String, ObjectId> changed = new HashMap<String, ObjectId>();
+        for (int i = 0; i < names.size(); i += 1) {
+            ObjectId id = files.get(names.get(i));
+            if (!id.equals(working.get(i))) {
+                changed.put(names.get(i), id);
+            }
+        }
+        Checkout.write(changed);
+    }
+
+    /**
+     * Returns the paths of the working files, in sorted order: every file
+     * of the top directory, and every file of a subdirectory that holds a
+     * file tracked or staged in the index or, if COMMIT is not null, a file
+     * of COMMIT. Other subdirectories, and .gitlet, are ignored.
+     */
+    private List<String> workingFiles(Commit commit) {
+        HashSet<String> dirs = new HashSet<String>();
+        addDirectories(_index.trackedNames(), dirs);
+        addDirectories(_index.stagedNames(), dirs);
+        if (commit != null) {
+            addDirectories(commit.getFiles().keySet(), dirs);
+        }
+        dirs.remove(".gitlet");
+        Stats.Timer timer = Stats.start("scan.working");
+        List<String> result = listFiles(new File("."), "", dirs).sorted()
+            .collect(Collectors.toList());
+        timer.stop(result.size());
+        return result;
+    }
+
+    /** Adds the directories containing each of PATHS to DIRS. */
+    private static void addDirectories(Collection<String> paths,
+                                       Set<String> dirs) {
+        for (String path : paths) {
+            for (int i = path.indexOf('/'); i >= 0;
+                 i = path.indexOf('/', i + 1)) {
+                dirs.add(path.substring(0, i));
+            }
+        }
+    }
+
+    /**
+     * Returns the paths, beginning with PREFIX, of the files in DIR and in
+     * those of its subdirectories listed in DIRS. The entries of DIR are
+     * examined in parallel.
+     */
+    private static Stream<String> listFiles(File dir, String prefix,
+                                            Set<String> dirs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return Stream.empty();
+        }
+        return Arrays.stream(files).parallel().flatMap(file -> {
+            String path = prefix + file.getName();
+            if (file.isFile()) {
+                return Stream.of(path);
+            } else if (file.isDirectory() && dirs.contains(path)) {
+                return listFiles(file, path + "/", dirs);
+            }
+            return Stream.empty();
+        });
+    }
+
+    /**
+     * Deletes the working file at PATH and any directories above it that
+     * are left empty.
+     */
+    private static void deleteFile(String path) {
+        File file = new File(path);
+        file.delete();
+        for (File dir = file.getParentFile(); dir != null;
+             dir = dir.getParentFile()) {
+            String[] rest = dir.list();
+            if (rest == null || rest.length > 0 || !dir.delete()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Packs all objects into a single delta-compressed packfile and writes
+     * reachability bitmaps for the branch heads. If PRUNE, first deletes
+     * the commits that no branch can reach, and drops the objects that
+     * only they refer to.
+     */
+    private void gc(boolean prune) {
+        int[] heads = headPositions();
+        List<Commit> commits = new ArrayList<Commit>();
+        if (!prune) {
+            for (ObjectId id : Commit.allIds()) {
+                commits.add(Commit.read(id));
+            }
+            Pack.repack(commits, null);
+        } else {
+            BitSet live = CommitBitmaps.reachable(heads);
+            List<ObjectId> ids = CommitGraph.ids();
+            for (int pos = 0; pos < ids.size(); pos += 1) {
+                if (live.get(pos)) {
+                    commits.add(Commit.read(ids.get(pos)));
+                } else {
+                    new File(Commit.COMMITS, ids.get(pos).toString()).delete();
                 }
             }
+            HashSet<ObjectId> keep = new HashSet<ObjectId>(_rmFiles.values());
+            for (Commit commit : commits) {
+                Tree.collectTrees(commit.getTree(), keep);
+            }
+            for (String name : _index.trackedNames()) {
+                keep.add(_index.tracked(name));
+            }
+            for (String name : _index.stagedNames()) {
+                keep.add(_index.staged(name));
+            }
+            Pack.repack(commits, keep);
+            if (commits.size() < ids.size()) {
+                CommitGraph.rebuild();
+                MessageIndex.rebuild();
+                heads = headPositions();
+            }
+        }
+        List<Integer> selected = new ArrayList<Integer>();
+        for (int pos : heads) {
+            selected.add(pos);
         }
+        CommitBitmaps.write(selected);
+    }
+
+    /**
+     * Returns the graph positions of the heads of all branches and of the
+     * current commit.
+     */
+    private int[] headPositions() {
+        List<String> branches = Refs.branches();
+        int[] result = new int[branches.size() + 1];
+        for (int i = 0; i < branches.size(); i += 1) {
+            result[i] = CommitGraph.position(
+                Refs.get(branches.get(i)).getValue());
+        }
+        result[branches.size()] = CommitGraph.position(_head.getValue());
+        return result;
+    }
+
+    /**
+     * Prints the ids of the commits reachable from the revisions in ARGS,
+     * newest first, or given "--count", only how many there are. A revision
+     * is HEAD, a branch or a commit id; "^REV" excludes the commits
+     * reachable from REV, and "REV1..REV2" means "^REV1 REV2". Reachability
+     * comes from the commit bitmaps where they exist.
+     */
+    private void revList(String[] args) {
+        boolean count = false;
+        List<Integer> include = new ArrayList<Integer>();
+        List<Integer> exclude = new ArrayList<Integer>();
+        for (String arg : args) {
+            int range = arg.indexOf("..");
+            if (arg.equals("--count")) {
+                count = true;
+            } else if (range >= 0) {
+                exclude.add(revision(arg.substring(0, range)));
+                include.add(revision(arg.substring(range + 2)));
+            } else if (arg.startsWith("^")) {
+                exclude.add(revision(arg.substring(1)));
+            } else {
+                include.add(revision(arg));
+            }
+        }
+        if (include.contains(CommitGraph.NONE)
+                || exclude.contains(CommitGraph.NONE)) {
+            return;
+        }
+        BitSet hidden = CommitBitmaps.reachable(
+            exclude.stream().mapToInt(Integer::intValue).toArray());
+        if (count) {
+            BitSet shown = CommitBitmaps.reachable(
+                include.stream().mapToInt(Integer::intValue).toArray());
+            shown.andNot(hidden);
+            System.out.println(shown.cardinality());
+            return;
+        }
+        CommitWalk walk = new CommitWalk();
+        for (int pos : include) {
+            walk.start(pos);
+        }
+        for (int pos = walk.next(); pos != CommitGraph.NONE;
+             pos = walk.next()) {
+            if (hidden.get(pos)) {
+                walk.skipParents();
+            } else {
+                System.out.println(CommitGraph.id(pos));
+            }
+        }
+    }
+
+    /**
+     * Returns the graph position of the commit named by REV, which is HEAD,
+     * a branch or a commit id. Prints an error and returns CommitGraph.NONE
+     * if there is no such commit.
+     */
+    private int revision(String rev) {
+        if (rev.equals("HEAD")) {
+            return CommitGraph.position(_head.getValue());
+        } else if (Refs.exists(rev)) {
+            return CommitGraph.position(Refs.get(rev).getValue());
+        }
+        ObjectId id = getID(rev);
+        return id == null ? CommitGraph.NONE : CommitGraph.position(id);
     }
 
     /**
      * Removes the BRANCH from branches.
      */
     private void removeBranch(String branch) {
-        if (!_branches.containsKey(branch)) {
+        if (!Refs.exists(branch)) {
             System.out.println("A branch with that name does not exist.");
             return;
         }
-        _branches.remove(branch);
+        Refs.remove(branch);
     }
 
     /**
-     * Prints out the log for all commits with LOG.
+     * Prints out the ids of all commits whose message is ARGS[0] or, given
+     * ARGS "--contains TEXT" or "--regex PATTERN", whose message contains
+     * TEXT or a match of PATTERN.
      */
-    private void find(String log) {
-        int count = 0;
-        for (Commit commit : _allCommitsEverMade.values()) {
-            if (commit.getLog().equals(log)) {
-                System.out.println(commit.getValue());
-                count += 1;
+    private void find(String[] args) {
+        List<ObjectId> found;
+        if (args.length == 1) {
+            found = findExact(args[0]);
+        } else if (args[0].equals("--contains")) {
+            found = findContaining(args[1]);
+        } else if (args[0].equals("--regex")) {
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(args[1]);
+            } catch (PatternSyntaxException excp) {
+                System.out.println("Invalid regular expression.");
+                return;
             }
+            found = scanLogs(Commit.allIds(),
+                log -> pattern.matcher(log).find());
+        } else {
+            System.out.println("Incorrect operands.");
+            return;
         }
-        if (count == 0) {
+        for (ObjectId id : found) {
+            System.out.println(id);
+        }
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
         }
     }
 
+    /**
+     * Returns the ids of all commits whose message is LOG, examining only
+     * the commits the message index lists under every word of LOG.
+     */
+    private List<ObjectId> findExact(String log) {
+        List<String> words = MessageIndex.words(log);
+        List<ObjectId> candidates = words.isEmpty()
+            ? Commit.allIds() : MessageIndex.candidates(words);
+        return scanLogs(candidates, log::equals);
+    }
+
+    /**
+     * Returns the ids of all commits whose message contains TEXT. The
+     * words of TEXT that cannot be parts of longer words in a message
+     * narrow the commits examined through the message index.
+     */
+    private List<ObjectId> findContaining(String text) {
+        List<String> words = MessageIndex.words(text);
+        if (!words.isEmpty() && Character.isLetterOrDigit(text.charAt(0))) {
+            words.remove(0);
+        }
+        if (!words.isEmpty() && Character.isLetterOrDigit(
+                text.charAt(text.length() - 1))) {
+            words.remove(words.size() - 1);
+        }
+        List<ObjectId> candidates = words.isEmpty()
+            ? Commit.allIds() : MessageIndex.candidates(words);
+        return scanLogs(candidates, log -> log.contains(text));
+    }
+
+    /**
+     * Returns those of IDS, in order, whose commit messages satisfy TEST.
+     * Large lists are scanned in parallel.
+     */
+    private List<ObjectId> scanLogs(List<ObjectId> ids,
+                                    Predicate<String> test) {
+        Stream<ObjectId> stream = ids.size() < PARALLEL_SCAN
+            ? ids.stream() : ids.parallelStream();
+        return stream.filter(id -> test.test(Commit.load(id).getLog()))
+            .collect(Collectors.toList());
+    }
+
     /**
      * Prints out the log for all commits ever made.
      */
     private void globalLog() {
-        for (Commit commit : _allCommitsEverMade.values()) {
-            commit.printLog();
+        for (ObjectId id : Commit.allIds()) {
+            Commit.read(id).printLog();
         }
     }
 
@@ -476,28 +821,25 @@ public class Gitlet implements Serializable {
 
     /** Checks out branch NAME. */
     private void branchCheckout(String name) {
-        if (!_branches.containsKey(name)) {
+        if (!Refs.exists(name)) {
             System.out.println("No such branch exists.");
             return;
         } else if (_currentBranch.equals(name)) {
             System.out.println("No need to checkout the current branch.");
             return;
         }
-        Commit tempBranch = _branches.get(name);
+        Commit tempBranch = Refs.get(name);
         if (hasOverwrite(tempBranch)) {
             return;
         }
-        clearDirectory(".");
-        clearDirectory(".gitlet");
-        clearDirectory(".gitlet/stage");
-        File commitDirectory = new File(".gitlet/commits/"
-                + tempBranch.getValue());
-        for (String fileName : commitDirectory.list()) {
-            File file = new File(".gitlet/commits/" + tempBranch.getValue()
-                    + "/" + fileName);
-            byte[] bytes = Utils.readContents(file);
-            Utils.writeContents(new File(fileName), bytes);
-            Utils.writeContents(new File(".gitlet/" + fileName) , bytes);
+        HashMap<String, ObjectId> files = tempBranch.getFiles();
+        checkoutFiles(files, tempBranch);
+        _index.clearTracked();
+        _index.clearStaged();
+        for (String fileName : files.keySet()) {
+            ObjectId id = files.get(fileName);
+            _index.track(fileName, id);
+            _index.recordWorking(fileName, id);
         }
         _currentBranch = name;
         _head = tempBranch;
@@ -505,81 +847,79 @@ public class Gitlet implements Serializable {
 
     /**
      * Returns the full id of the commit in the current gitlet system from
-     * given ID. Returns null if no commit matches such ID.
+     * given ID, which may be abbreviated to as few as 6 digits. Prints an
+     * error and returns null if no commit, or more than one, matches ID.
      */
-    private String getID(String id) {
-        if (id.length() < 6) {
+    private ObjectId getID(String id) {
+        List<ObjectId> matches = id.length() < 6
+            ? Collections.<ObjectId>emptyList() : CommitIndex.matches(id, 2);
+        if (matches.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+            return null;
+        } else if (matches.size() > 1) {
+            System.out.println("That commit id is ambiguous.");
             return null;
         }
-        for (String full : _allCommitsEverMade.keySet()) {
-            if (subIsFull(id, full)) {
-                return full;
-            }
-        }
-        return null;
-    }
-
-    /** Helper for getID. Returns true if SUB is an abbreviation of FULL.*/
-    private boolean subIsFull(String sub, String full) {
-        return sub.equals(full.substring(0, sub.length()));
+        return matches.get(0);
     }
 
     /** Checks out file NAME. */
     private void fileCheckout(String name) {
-        if (!_head.getFiles().containsKey(name)) {
-            System.out.println("File does not exist in that commit.");
-            return;
+        String path = workingPath(name);
+        if (path != null) {
+            fileCheckout(_head, path);
         }
-        byte[] bytes = Utils.readContents(new File(".gitlet/commits/"
-                + _head.getValue() + "/" + name));
-        Utils.writeContents(new File(name), bytes);
     }
 
     /** Checks out file NAME fom commit ID. */
     private void fileCheckout(String id, String name) {
-        String fullID = getID(id);
-        if (fullID == null) {
-            System.out.println("No commit with that id exists.");
-            return;
+        String path = workingPath(name);
+        ObjectId fullID = path == null ? null : getID(id);
+        if (fullID != null) {
+            fileCheckout(Commit.read(fullID), path);
         }
-        Commit targetCommit = _allCommitsEverMade.get(fullID);
-        if (!targetCommit.getFiles().containsKey(name)) {
+    }
+
+    /** Checks out file NAME from COMMIT. */
+    private void fileCheckout(Commit commit, String name) {
+        ObjectId blob = commit.getFiles().get(name);
+        if (blob == null) {
             System.out.println("File does not exist in that commit.");
             return;
         }
-        byte[] bytes = Utils.readContents(new File(".gitlet/commits/"
-                + targetCommit.getValue() + "/" + name));
-        Utils.writeContents(new File(name), bytes);
-
+        ObjectStore.checkout(blob, new File(name));
     }
 
     /**
      * Creates branch NAME at the current _head.
      */
     private void branch(String name) {
-        if (_branches.containsKey(name)) {
+        if (name.isEmpty()) {
+            System.out.println("A branch name cannot be empty.");
+        } else if (Refs.exists(name)) {
             System.out.println("A branch with that name already exists.");
         } else {
-            _branches.put(name, _head);
+            Refs.put(name, _head);
         }
     }
 
     /**
      * Removes FILE and adds to _rmFiles.
      */
-    private void remove(String file) {
-        File stageFile = new File(".gitlet/stage/" + file);
-        File trackedFile = new File(".gitlet/" + file);
-        File repoFile = new File(file);
+    private void remove(String name) {
+        String file = workingPath(name);
+        if (file == null) {
+            return;
+        }
         boolean valid = false;
-        if (stageFile.exists()) {
-            stageFile.delete();
+        if (_index.isStaged(file)) {
+            _index.unstage(file);
             valid = true;
         }
-        if (trackedFile.exists()) {
-            _rmFiles.put(file, Utils.sha1(Utils.readContents(trackedFile)));
-            trackedFile.delete();
-            repoFile.delete();
+        if (_index.isTracked(file)) {
+            _rmFiles.put(file, _index.tracked(file));
+            _index.untrack(file);
+            deleteFile(file);
             valid = true;
         }
         if (!valid) {
@@ -589,37 +929,88 @@ public class Gitlet implements Serializable {
 
     /**
      * Gets the gitlet system from the directory. Returns updated gitlet system.
+     * Only the current branch, head and removed files are read; commits are
+     * read when they are needed.
      */
-    private static Gitlet reconstruct() {
-        Gitlet git;
-        if (!(new File(".gitlet/data/data").exists())) {
-            return new Gitlet();
-        }
-        File inFile = new File(".gitlet/data/data");
-        try {
-            ObjectInputStream inp = new ObjectInputStream(new FileInputStream(
-                    inFile));
-            git = (Gitlet) inp.readObject();
-            inp.close();
-        } catch (IOException | ClassNotFoundException excp) {
-            System.out.println("can't read");
-            git = null;
+    static Gitlet reconstruct() {
+        Stats.Timer timer = Stats.start("repository.load");
+        Gitlet git = load();
+        timer.stop(0);
+        return git;
+    }
+
+    /** Reads the gitlet system from the directory, as reconstruct does. */
+    private static Gitlet load() {
+        Gitlet git = new Gitlet();
+        CommitIndex.reload();
+        CommitGraph.reload();
+        CommitBitmaps.reload();
+        if (!HEAD.isFile()) {
+            return git;
         }
+        String[] head = new String(Utils.readContents(HEAD),
+                StandardCharsets.UTF_8).split("\n");
+        git._currentBranch = git._savedBranch = head[0];
+        git._savedHead = ObjectId.fromHex(head[1]);
+        git._head = Commit.read(git._savedHead);
+        if (REMOVED.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(REMOVED)))) {
+                if (in.readByte() != REMOVED_VERSION) {
+                    throw new IOException("unknown format of " + REMOVED);
+                }
+                for (int n = in.readInt(); n > 0; n -= 1) {
+                    String name = in.readUTF();
+                    git._rmFiles.put(name, ObjectId.read(in));
+                }
+            } catch (IOException excp) {
+                System.out.println("can't read");
+            }
+        }
+        git._savedRmFiles.putAll(git._rmFiles);
+        git._index = Index.read();
         return git;
     }
 
     /**
-     * Serializes the gitlet system and writes it into the file.
+     * Writes whichever of the current branch, head and removed files have
+     * changed since they were last read or written.
      */
-    private void serialize() {
-        try {
-            ObjectOutputStream out = new ObjectOutputStream(
-                    new FileOutputStream(new File(".gitlet/data/data")));
-            out.writeObject(this);
-            out.close();
-        } catch (IOException excp) {
+    void serialize() {
+        if (!isInit() || _head == null) {
             return;
         }
+        Stats.Timer timer = Stats.start("repository.save");
+        save();
+        timer.stop(0);
+    }
+
+    /** Writes the gitlet system, as serialize does. */
+    private void save() {
+        if (!_currentBranch.equals(_savedBranch)
+                || !_head.getValue().equals(_savedHead)) {
+            Utils.writeContents(HEAD, (_currentBranch + "\n"
+                    + _head.getValue() + "\n").getBytes(
+                        StandardCharsets.UTF_8));
+            _savedBranch = _currentBranch;
+            _savedHead = _head.getValue();
+        }
+        if (!_rmFiles.equals(_savedRmFiles)) {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(REMOVED)))) {
+                out.writeByte(REMOVED_VERSION);
+                out.writeInt(_rmFiles.size());
+                for (String name : _rmFiles.keySet()) {
+                    out.writeUTF(name);
+                    _rmFiles.get(name).write(out);
+                }
+            } catch (IOException excp) {
+                return;
+            }
+            _savedRmFiles.clear();
+            _savedRmFiles.putAll(_rmFiles);
+        }
+        _index.write();
     }
 
     /**
@@ -627,17 +1018,16 @@ public class Gitlet implements Serializable {
      * gitlet system.
      */
     public Gitlet initialize() {
-        if (new File(".gitlet/stage").exists()) {
+        if (HEAD.exists()) {
             System.out.println("A gitlet version-control system already exists"
                     + " in the current directory.");
             return null;
         } else {
             createDirectories();
-            Commit initial = new Commit("initial commit", null);
-            _branches.put("master", initial);
-            _allCommitsEverMade.put(initial.getValue(), initial);
+            Commit initial = new Commit("initial commit", null, _index);
+            Refs.put("master", initial);
             _currentBranch = "master";
-            _head = _branches.get("master");
+            _head = initial;
             return this;
         }
     }
@@ -646,40 +1036,53 @@ public class Gitlet implements Serializable {
      * Create the directories needed to hold the system.
      */
     private void createDirectories() {
-        new File(".gitlet/stage").mkdirs();
         new File(".gitlet/data").mkdirs();
         new File(".gitlet/commits").mkdirs();
+        Refs.REFS.mkdirs();
+        ObjectStore.OBJECTS.mkdirs();
+    }
+
+    /**
+     * Returns the normal form of the path NAME, as Tree.normalize gives it,
+     * or prints an error and returns null if NAME is not a path within the
+     * working directory.
+     */
+    private static String workingPath(String name) {
+        String path = Tree.normalize(name);
+        if (path == null) {
+            System.out.println("That path is outside the repository.");
+        }
+        return path;
     }
 
     /**
-     * Add file FILENAME to the stage.
+     * Add file NAME to the stage.
      */
-    public void add(String fileName) {
+    public void add(String name) {
+        String fileName = workingPath(name);
+        if (fileName == null) {
+            return;
+        }
         File file = new File(fileName);
         if (file.exists()) {
             if (!file.isDirectory() && _rmFiles.containsKey(fileName)) {
-                byte[] bytes = Utils.readContents(file);
-                if (!_rmFiles.get(fileName).equals(Utils.sha1(bytes))) {
-                    Utils.writeContents(new File(".gitlet/stage/" + fileName),
-                        bytes);
+                ObjectId id = ObjectStore.put(file);
+                if (!_rmFiles.get(fileName).equals(id)) {
+                    _index.stage(fileName, id);
                 }
-                Utils.writeContents(new File(".gitlet/" + fileName),
-                    bytes);
+                _index.track(fileName, id);
                 _rmFiles.remove(fileName);
             }
-            File repoFile = new File(fileName);
-            File trackedFile = new File(".gitlet/" + fileName);
             if (!file.isDirectory()) {
-                if (trackedFile.exists()) {
-                    String rVal = Utils.sha1(Utils.readContents(repoFile));
-                    String tVal = Utils.sha1(Utils.readContents(trackedFile));
-                    if (rVal.equals(tVal)) {
-                        return;
-                    }
+                ObjectId id = _index.workingId(fileName);
+                if (id.equals(_index.tracked(fileName))) {
+                    return;
+                }
+                if (!ObjectStore.contains(id)) {
+                    id = ObjectStore.put(file);
                 }
-                byte[] bytes = Utils.readContents(file);
-                Utils.writeContents(new File(".gitlet/stage/" + fileName),
-                        bytes);
+                _index.stage(fileName, id);
+                _index.recordWorking(fileName, id);
             }
         } else {
             System.out.println("File does not exist.");
@@ -690,31 +1093,39 @@ public class Gitlet implements Serializable {
      * Make a commit with the message ARGS.
      */
     public void commit(String[] args) {
-        if (args[1].length() == 0) {
+        commit(args[1], null);
+    }
+
+    /**
+     * Commits the staged files with message LOG, recording SECONDPARENT as
+     * the second parent if it is not null.
+     */
+    private void commit(String log, Commit secondParent) {
+        if (log.length() == 0) {
             System.out.println("Please enter a commit message.");
             return;
         }
-        File stage = new File(".gitlet/stage");
-        if (stage.list().length == 0 && _rmFiles.size() == 0) {
+        if (_index.stagedNames().isEmpty() && _rmFiles.size() == 0) {
             System.out.println("No changes added to the commit.");
             return;
         }
-        Commit newCommit = new Commit(args[1], _head);
+        Commit newCommit = new Commit(log, _head, secondParent, _index);
 
         _head = newCommit;
-        _branches.put(_currentBranch, _head);
-        _allCommitsEverMade.put(newCommit.getValue(), newCommit);
+        Refs.put(_currentBranch, _head);
         _rmFiles.clear();
     }
 
     /**
-     * Print this system's commit's logs.
+     * Print the logs of this system's commit and of all its ancestors,
+     * including those reached through merges, newest first.
      */
     public void log() {
-        Commit pointer = _head;
-        while (pointer != null) {
-            pointer.printLog();
-            pointer = pointer.getParent();
+        CommitWalk walk = new CommitWalk();
+        walk.start(CommitGraph.position(_head.getValue()));
+        for (int pos = walk.next(); pos != CommitGraph.NONE;
+             pos = walk.next()) {
+            Commit.read(CommitGraph.id(pos)).printLog();
         }
     }
 
@@ -723,20 +1134,13 @@ public class Gitlet implements Serializable {
      * untracked files, and unstaged modifications.
      */
     private void status() {
-        File stage = new File(".gitlet/stage");
-        File[] stageFiles = stage.listFiles();
-        Arrays.sort(stageFiles);
-        File tracked = new File(".gitlet");
-        File[] trackedFiles = tracked.listFiles();
-        Arrays.sort(trackedFiles);
-        File repo = new File(".");
-        File[] repoFiles = repo.listFiles();
-        Arrays.sort(repoFiles);
+        List<String> stageFiles = _index.stagedNames();
+        List<String> trackedFiles = _index.trackedNames();
         System.out.println("=== Branches ===");
         printBranches();
         System.out.println("\n=== Staged Files ===");
-        for (File file : stageFiles) {
-            System.out.println(file.getName());
+        for (String name : stageFiles) {
+            System.out.println(name);
         }
         System.out.println("\n=== Removed Files ===");
         Object[] removedFiles = _rmFiles.keySet().toArray();
@@ -744,52 +1148,106 @@ public class Gitlet implements Serializable {
         for (Object file : removedFiles) {
             System.out.println(file);
         }
+        List<String> names = new ArrayList<String>(stageFiles);
+        names.addAll(trackedFiles);
+        List<ObjectId> working = _index.workingIds(names);
         System.out.println("\n=== Modifications Not Staged For Commit ===");
-        for (File file : stageFiles) {
-            if (!new File(file.getName()).exists()) {
-                System.out.println(file.getName() + " (deleted)");
-            } else {
-                String repoVal = Utils.sha1(Utils.readContents(new File(file
-                        .getName())));
-                String stageVal = Utils.sha1(Utils.readContents(file));
-                if (!repoVal.equals(stageVal)) {
-                    System.out.println(file.getName() + " (modified)");
-                }
-            }
-        }
-        for (File file : trackedFiles) {
-            if (new File(file.getName()).exists()) {
-                String repoVal = Utils.sha1(Utils.readContents(new File(file
-                        .getName())));
-                String stageVal = Utils.sha1(Utils.readContents(file));
-                if (!repoVal.equals(stageVal)) {
-                    System.out.println(file.getName() + " (modified)");
-                }
-            } else if (file.isFile()) {
-                System.out.println(file.getName() + " (deleted)");
+        for (int i = 0; i < names.size(); i += 1) {
+            String name = names.get(i);
+            ObjectId expected = i < stageFiles.size()
+                ? _index.staged(name) : _index.tracked(name);
+            if (working.get(i) == null) {
+                System.out.println(name + " (deleted)");
+            } else if (!working.get(i).equals(expected)) {
+                System.out.println(name + " (modified)");
             }
         }
         System.out.println();
         System.out.println("=== Untracked Files ===");
-        for (File file : repoFiles) {
-            if (file.isDirectory()) {
-                continue;
+        for (String name : workingFiles(null)) {
+            if (!_index.isTracked(name) && !_index.isStaged(name)) {
+                System.out.println(name);
+            }
+        }
+    }
+
+    /**
+     * Prints the changes to files in unified diff format. Given no ARGS,
+     * the working files are compared with the files as staged or tracked;
+     * given one revision (HEAD, a branch or a commit id), with the files of
+     * that commit; given two, the first commit's files are compared with
+     * the second's. Files whose blob ids are equal on both sides, as
+     * judged for working files from the index's stat data where it can
+     * be, are skipped without being read, as are the subtrees two commits
+     * share.
+     */
+    private void diff(String[] args) {
+        int[] revs = new int[args.length];
+        for (int i = 0; i < args.length; i += 1) {
+            revs[i] = revision(args[i]);
+            if (revs[i] == CommitGraph.NONE) {
+                return;
+            }
+        }
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                System.out, Utils.BUFFER_SIZE * 8), false);
+        if (args.length == 2) {
+            Commit from = Commit.read(CommitGraph.id(revs[0]));
+            Commit to = Commit.read(CommitGraph.id(revs[1]));
+            for (Map.Entry<String, ObjectId[]> e
+                     : Tree.diff(from.getTree(), to.getTree()).entrySet()) {
+                ObjectId[] ids = e.getValue();
+                printDiff(out, e.getKey(), Diff.Text.of(ids[0]),
+                        ids[0] != null, Diff.Text.of(ids[1]), ids[1] != null);
+            }
+            out.flush();
+            return;
+        }
+        TreeMap<String, ObjectId> expected = new TreeMap<String, ObjectId>();
+        for (String name : _index.trackedNames()) {
+            expected.put(name, _index.tracked(name));
+        }
+        for (String name : _index.stagedNames()) {
+            expected.put(name, _index.staged(name));
+        }
+        if (args.length == 1) {
+            for (String name : expected.keySet()) {
+                expected.put(name, null);
             }
-            File curr = new File(".gitlet/" + file.getName());
-            File curr2 = new File(".gitlet/stage/" + file.getName());
-            if (!curr.exists() && !curr2.exists()) {
-                System.out.println(curr.getName());
+            expected.putAll(Commit.read(CommitGraph.id(revs[0])).getFiles());
+        }
+        List<String> names = new ArrayList<String>(expected.keySet());
+        List<ObjectId> working = _index.workingIds(names);
+        for (int i = 0; i < names.size(); i += 1) {
+            String name = names.get(i);
+            ObjectId old = expected.get(name), now = working.get(i);
+            if (now == null ? old != null : !now.equals(old)) {
+                printDiff(out, name, Diff.Text.of(old), old != null,
+                        now == null ? Diff.Text.EMPTY
+                        : Diff.Text.of(new File(name)), now != null);
             }
         }
+        out.flush();
+    }
+
+    /**
+     * Prints to OUT the differences made to file NAME, which had text
+     * BEFORE, if OLD, or was absent, and now has text AFTER, if NOW, or is
+     * absent.
+     */
+    private static void printDiff(PrintStream out, String name,
+                                  Diff.Text before, boolean old,
+                                  Diff.Text after, boolean now) {
+        Stats.Timer timer = Stats.start("diff");
+        new Diff(before, after).write(out, name, old, now);
+        timer.stop(before.size() + after.size());
     }
 
     /**
      * Prints out existing branches and marks the current one.
      */
     private void printBranches() {
-        Object[] branches = _branches.keySet().toArray();
-        Arrays.sort(branches);
-        for (Object branch : branches) {
+        for (String branch : Refs.branches()) {
             if (branch.equals(_currentBranch)) {
                 System.out.println("*" + branch);
             } else {
@@ -813,24 +1271,24 @@ public class Gitlet implements Serializable {
     }
 
     /**
-     * Return branches this system.
+     * Return the names of the branches of this system.
      */
-    public HashMap<String, Commit> getBranches() {
-        return _branches;
+    public List<String> getBranches() {
+        return Refs.branches();
     }
 
     /**
-     * Return files marked for removal on this system.
+     * Return the index of tracked and staged files of this system.
      */
-    public HashMap<String, String> getRmFiles() {
-        return _rmFiles;
+    Index getIndex() {
+        return _index;
     }
 
     /**
-     * Return all commits ever made on this system.
+     * Return files marked for removal on this system.
      */
-    public HashMap<String, Commit> getAllCommitsEverMade() {
-        return _allCommitsEverMade;
+    public HashMap<String, ObjectId> getRmFiles() {
+        return _rmFiles;
     }
 
     /**
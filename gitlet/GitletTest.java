@@ -3,9 +3,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertArrayEquals;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.Test;
 import ucb.junit.textui;
 /**
@@ -19,7 +26,7 @@ public class GitletTest {
         new File(".gitlet").delete();
         assertTrue(!(new File(".gitlet").exists()));
         command("java", "gitlet.Main", "init");
-        assertTrue(new File(".gitlet/stage").exists());
+        assertTrue(new File(".gitlet/objects").exists());
         assertTrue(new File(".gitlet/data").exists());
         assertTrue(new File(".gitlet/commits").exists());
         assertEquals(
@@ -39,16 +46,16 @@ public class GitletTest {
         assertTrue(new File("test1.txt").exists());
         command("java", "gitlet.Main", "init");
         command("java", "gitlet.Main", "add", "test1.txt");
-        assertTrue(new File(".gitlet/stage/test1.txt").exists());
+        assertTrue(Gitlet.thisSystem().getIndex().isStaged("test1.txt"));
         assertEquals("Please enter a commit message.\n", command("java",
                 "gitlet.Main", "commit", ""));
         command("java", "gitlet.Main", "commit", "commit1");
-        assertTrue(new File(".gitlet/stage").list().length == 0);
+        assertTrue(Gitlet.thisSystem().getIndex().stagedNames().isEmpty());
         Gitlet g = Gitlet.thisSystem();
         assertTrue((g.getHead().contains(new File("test1.txt"))));
-        String commitID = g.getHead().getValue();
-        assertTrue(new File(".gitlet/commits/" + commitID + "/test1.txt")
-                .exists());
+        String blobID = g.getHead().getFiles().get("test1.txt").toString();
+        assertTrue(new File(".gitlet/objects/" + blobID.substring(0, 2) + "/"
+                + blobID.substring(2)).exists());
         assertEquals("No changes added to the commit.\n", command("java",
                 "gitlet.Main", "commit", "commit 2"));
         byte[] contentsTest2 = "Small Step for man".getBytes();
@@ -73,14 +80,13 @@ public class GitletTest {
         command("java", "gitlet.Main", "commit", "commit1");
         command("java", "gitlet.Main", "rm", "test1.txt");
         File whereAreYou = new File("test1.txt");
-        File tracked = new File(".gitlet/test1.txt");
         assertTrue(!whereAreYou.exists());
-        assertTrue(!tracked.exists());
+        assertTrue(!Gitlet.thisSystem().getIndex().isTracked("test1.txt"));
         Utils.writeContents(new File("test1.txt"), babyComeBack);
         command("java", "gitlet.Main", "add", "test1.txt");
-        assertTrue(tracked.exists());
-        File noNeedToStage = new File(".gitlet/stage/test1.txt");
-        assertTrue(!noNeedToStage.exists());
+        Index index = Gitlet.thisSystem().getIndex();
+        assertTrue(index.isTracked("test1.txt"));
+        assertTrue(!index.isStaged("test1.txt"));
         whereAreYou.delete();
         clearDirectory(".gitlet");
         restoreWorkingDirectory();
@@ -97,19 +103,17 @@ public class GitletTest {
         assertEquals("No reason to remove the file.\n", command("java",
                 "gitlet.Main", "rm", "test1.txt"));
         command("java", "gitlet.Main", "add", "test1.txt");
-        assertTrue(new File(".gitlet/stage/test1.txt").exists());
+        assertTrue(Gitlet.thisSystem().getIndex().isStaged("test1.txt"));
         command("java", "gitlet.Main", "rm", "test1.txt");
-        assertTrue(!new File(".gitlet/stage/test1.txt").exists());
+        assertTrue(!Gitlet.thisSystem().getIndex().isStaged("test1.txt"));
         command("java", "gitlet.Main", "add", "test1.txt");
         command("java", "gitlet.Main", "commit", "commit1");
         Gitlet f = Gitlet.thisSystem();
-        assertTrue(new File(".gitlet/commits/" + f.getHead().getValue()
-                + "/test1.txt").exists());
+        assertTrue(f.getHead().getFiles().containsKey("test1.txt"));
         command("java", "gitlet.Main", "rm", "test1.txt");
         command("java", "gitlet.Main", "commit", "removed file");
         Gitlet g = Gitlet.thisSystem();
-        assertEquals(0, new File(".gitlet/commits/" + g.getHead().getValue())
-                .listFiles().length);
+        assertEquals(0, g.getHead().getFiles().size());
         clearDirectory(".gitlet");
         restoreWorkingDirectory();
     }
@@ -274,9 +278,621 @@ public class GitletTest {
         restoreWorkingDirectory();
     }
 
+    @Test
+    public void testAbbreviatedId() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        byte[] contentsTest1 = "Small step\n".getBytes();
+        byte[] contentsTest2 = "Giant leap\n".getBytes();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), contentsTest1);
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        String id = Gitlet.thisSystem().getHead().getValue().toString();
+        assertTrue(CommitIndex.ids().contains(ObjectId.fromHex(id)));
+        Utils.writeContents(new File("test1.txt"), contentsTest2);
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit2");
+        assertEquals("No commit with that id exists.\n", command("java",
+                "gitlet.Main", "checkout", id.substring(0, 5), "--",
+                "test1.txt"));
+        assertEquals("", command("java", "gitlet.Main", "checkout",
+                id.substring(0, 8), "--", "test1.txt"));
+        assertArrayEquals(contentsTest1,
+                Utils.readContents(new File("test1.txt")));
+        assertEquals("", command("java", "gitlet.Main", "reset",
+                id.substring(0, 6)));
+        assertEquals(id, Gitlet.thisSystem().getHead().getValue().toString());
+        new File("test1.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testFind() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "Fix the parser bug");
+        String id1 = Gitlet.thisSystem().getHead().getValue().toString();
+        Utils.writeContents(new File("test1.txt"), "Giant leap\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "Fix parser");
+        String id2 = Gitlet.thisSystem().getHead().getValue().toString();
+        assertEquals(id2 + "\n", command("java", "gitlet.Main", "find",
+                "Fix parser"));
+        assertEquals(id1 + "\n", command("java", "gitlet.Main", "find",
+                "--contains", "he pars"));
+        assertEquals(id1 + "\n", command("java", "gitlet.Main", "find",
+                "--regex", "^Fix.*bug$"));
+        assertEquals("Found no commit with that message.\n", command("java",
+                "gitlet.Main", "find", "parser"));
+        new File("test1.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testMergeUnevenBranches() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        byte[] contentsTest1 = "Small step\n".getBytes();
+        byte[] contentsTest2 = "Giant leap\n".getBytes();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), contentsTest1);
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        command("java", "gitlet.Main", "branch", "other");
+        for (int i = 0; i < 3; i += 1) {
+            Utils.writeContents(new File("test2.txt"), ("v" + i).getBytes());
+            command("java", "gitlet.Main", "add", "test2.txt");
+            command("java", "gitlet.Main", "commit", "master" + i);
+        }
+        command("java", "gitlet.Main", "checkout", "other");
+        Utils.writeContents(new File("test1.txt"), contentsTest2);
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "other1");
+        command("java", "gitlet.Main", "checkout", "master");
+        CommitGraph.FILE.delete();
+        assertEquals("", command("java", "gitlet.Main", "merge", "other"));
+        assertArrayEquals(contentsTest2,
+                Utils.readContents(new File("test1.txt")));
+        assertArrayEquals("v2".getBytes(),
+                Utils.readContents(new File("test2.txt")));
+        new File("test1.txt").delete();
+        new File("test2.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testRepeatedMerge() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        command("java", "gitlet.Main", "branch", "other");
+        Utils.writeContents(new File("test2.txt"), "master\n".getBytes());
+        command("java", "gitlet.Main", "add", "test2.txt");
+        command("java", "gitlet.Main", "commit", "master1");
+        command("java", "gitlet.Main", "checkout", "other");
+        Utils.writeContents(new File("test3.txt"), "v1\n".getBytes());
+        command("java", "gitlet.Main", "add", "test3.txt");
+        command("java", "gitlet.Main", "commit", "other1");
+        command("java", "gitlet.Main", "checkout", "master");
+        assertEquals("", command("java", "gitlet.Main", "merge", "other"));
+        Commit merged = Gitlet.thisSystem().getHead();
+        assertEquals(Refs.get("other").getValue(),
+                merged.getSecondParentId());
+        String log = command("java", "gitlet.Main", "log");
+        assertTrue(log.contains("Merge: "));
+        assertTrue(log.contains("other1"));
+        command("java", "gitlet.Main", "checkout", "other");
+        Utils.writeContents(new File("test3.txt"), "v2\n".getBytes());
+        command("java", "gitlet.Main", "add", "test3.txt");
+        command("java", "gitlet.Main", "commit", "other2");
+        command("java", "gitlet.Main", "checkout", "master");
+        assertEquals("", command("java", "gitlet.Main", "merge", "other"));
+        assertArrayEquals("v2\n".getBytes(),
+                Utils.readContents(new File("test3.txt")));
+        new File("test1.txt").delete();
+        new File("test2.txt").delete();
+        new File("test3.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testBranchNames() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        assertEquals("", command("java", "gitlet.Main", "branch",
+                "feature/x"));
+        assertEquals("", command("java", "gitlet.Main", "branch",
+                "../../evil"));
+        assertTrue(!new File("evil").exists());
+        assertEquals(Arrays.asList("../../evil", "feature/x", "master"),
+                Gitlet.thisSystem().getBranches());
+        command("java", "gitlet.Main", "checkout", "feature/x");
+        assertEquals("feature/x", Gitlet.thisSystem().getCurrentBranch());
+        assertEquals("", command("java", "gitlet.Main", "rm-branch",
+                "../../evil"));
+        assertEquals(Arrays.asList("feature/x", "master"),
+                Gitlet.thisSystem().getBranches());
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testRevListAndPrune() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        command("java", "gitlet.Main", "branch", "other");
+        Utils.writeContents(new File("test1.txt"), "Giant leap\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit2");
+        String id = Gitlet.thisSystem().getHead().getValue().toString();
+        assertEquals("3\n", command("java", "gitlet.Main", "rev-list",
+                "--count", "master"));
+        assertEquals("1\n", command("java", "gitlet.Main", "rev-list",
+                "--count", "other..master"));
+        assertEquals(id + "\n", command("java", "gitlet.Main", "rev-list",
+                "master", "^other"));
+        command("java", "gitlet.Main", "gc");
+        assertTrue(CommitBitmaps.FILE.isFile());
+        assertEquals("0\n", command("java", "gitlet.Main", "rev-list",
+                "--count", "master..other"));
+        command("java", "gitlet.Main", "checkout", "other");
+        command("java", "gitlet.Main", "rm-branch", "master");
+        command("java", "gitlet.Main", "gc", "--prune");
+        assertTrue(!new File(Commit.COMMITS, id).exists());
+        assertEquals("Found no commit with that message.\n",
+                command("java", "gitlet.Main", "find", "commit2"));
+        assertEquals("2\n", command("java", "gitlet.Main", "rev-list",
+                "--count", "HEAD"));
+        new File("test1.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
     /**
-     * Processes command from ARGS.
+     * Files in subdirectories are committed, checked out and merged, and a
+     * directory emptied by rm is removed.
      */
+    @Test
+    public void testSubdirectories() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        new File("dir/sub").mkdirs();
+        Utils.writeContents(new File("dir/sub/a.txt"), "Small step\n"
+                .getBytes());
+        command("java", "gitlet.Main", "add", "dir/sub/a.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        command("java", "gitlet.Main", "branch", "other");
+        Utils.writeContents(new File("dir/sub/a.txt"), "Giant leap\n"
+                .getBytes());
+        command("java", "gitlet.Main", "add", "dir/sub/a.txt");
+        command("java", "gitlet.Main", "commit", "commit2");
+        command("java", "gitlet.Main", "checkout", "other");
+        assertEquals("Small step\n", new String(Utils.readContents(
+                new File("dir/sub/a.txt"))));
+        Utils.writeContents(new File("dir/b.txt"), "Other\n".getBytes());
+        command("java", "gitlet.Main", "add", "dir/b.txt");
+        command("java", "gitlet.Main", "commit", "commit3");
+        command("java", "gitlet.Main", "checkout", "master");
+        assertTrue(!new File("dir/b.txt").exists());
+        command("java", "gitlet.Main", "merge", "other");
+        assertEquals("Other\n", new String(Utils.readContents(
+                new File("dir/b.txt"))));
+        assertEquals("Giant leap\n", new String(Utils.readContents(
+                new File("dir/sub/a.txt"))));
+        Commit head = Gitlet.thisSystem().getHead();
+        assertTrue(head.getFiles().containsKey("dir/b.txt"));
+        assertTrue(head.getFiles().containsKey("dir/sub/a.txt"));
+        command("java", "gitlet.Main", "rm", "dir/sub/a.txt");
+        assertTrue(!new File("dir/sub").exists());
+        clearDirectory("dir");
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    /**
+     * Paths are normalized, and paths outside the working directory or in
+     * .gitlet are refused.
+     */
+    @Test
+    public void testPathNormalization() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        new File("d").mkdirs();
+        Utils.writeContents(new File("d/x.txt"), "Small step\n".getBytes());
+        command("java", "gitlet.Main", "add", "d//x.txt");
+        command("java", "gitlet.Main", "add", "d/./x.txt");
+        command("java", "gitlet.Main", "add", "./d/../d/x.txt");
+        assertEquals(Arrays.asList("d/x.txt"),
+                Gitlet.thisSystem().getIndex().stagedNames());
+        String outside = "That path is outside the repository.\n";
+        assertEquals(outside, command("java", "gitlet.Main", "add",
+                "../outside.txt"));
+        assertEquals(outside, command("java", "gitlet.Main", "add",
+                ".gitlet/HEAD"));
+        assertEquals(outside, command("java", "gitlet.Main", "rm",
+                "d/../.."));
+        command("java", "gitlet.Main", "commit", "commit1");
+        assertEquals(outside, command("java", "gitlet.Main", "checkout",
+                "--", "../outside.txt"));
+        assertTrue(!new File("../outside.txt").exists());
+        new File("d/x.txt").delete();
+        command("java", "gitlet.Main", "checkout", "--", "d//x.txt");
+        assertEquals("Small step\n", new String(Utils.readContents(
+                new File("d/x.txt"))));
+        clearDirectory("d");
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testStatusManyFiles() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        for (int i = 0; i < 100; i += 1) {
+            String name = String.format("f%03d.txt", i);
+            Utils.writeContents(new File(name), name.getBytes());
+            command("java", "gitlet.Main", "add", name);
+        }
+        command("java", "gitlet.Main", "commit", "many");
+        Utils.writeContents(new File("f007.txt"), "changed".getBytes());
+        new File("f042.txt").delete();
+        Utils.writeContents(new File("new.txt"), "new".getBytes());
+        assertEquals("=== Branches ===\n*master\n\n=== Staged Files ===\n"
+                + "\n=== Removed Files ===\n\n"
+                + "=== Modifications Not Staged For Commit ===\n"
+                + "f007.txt (modified)\nf042.txt (deleted)\n\n"
+                + "=== Untracked Files ===\nnew.txt\n",
+                command("java", "gitlet.Main", "status"));
+        for (int i = 0; i < 100; i += 1) {
+            new File(String.format("f%03d.txt", i)).delete();
+        }
+        new File("new.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testCheckoutKeepsUnchangedFiles() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        File same = new File("test1.txt"), changed = new File("test2.txt");
+        Utils.writeContents(same, "Small step\n".getBytes());
+        Utils.writeContents(changed, "Giant leap\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "add", "test2.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        String id = Gitlet.thisSystem().getHead().getValue().toString();
+        command("java", "gitlet.Main", "branch", "other");
+        Utils.writeContents(changed, "For mankind\n".getBytes());
+        command("java", "gitlet.Main", "add", "test2.txt");
+        command("java", "gitlet.Main", "commit", "commit2");
+        long time = 1000000000000L;
+        assertTrue(same.setLastModified(time));
+        command("java", "gitlet.Main", "checkout", "other");
+        assertEquals(time, same.lastModified());
+        assertEquals("Giant leap\n", new String(Utils.readContents(changed)));
+        command("java", "gitlet.Main", "checkout", "master");
+        command("java", "gitlet.Main", "reset", id);
+        assertEquals(time, same.lastModified());
+        assertEquals("Giant leap\n", new String(Utils.readContents(changed)));
+        same.delete();
+        changed.delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testCheckoutManyFiles() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        command("java", "gitlet.Main", "branch", "empty");
+        for (int i = 0; i < 40; i += 1) {
+            String name = String.format("dir/f%02d.txt", i);
+            new File("dir").mkdir();
+            Utils.writeContents(new File(name), name.getBytes());
+            command("java", "gitlet.Main", "add", name);
+        }
+        command("java", "gitlet.Main", "commit", "many");
+        command("java", "gitlet.Main", "checkout", "empty");
+        assertTrue(!new File("dir").exists());
+        command("java", "gitlet.Main", "checkout", "master");
+        for (int i = 0; i < 40; i += 1) {
+            String name = String.format("dir/f%02d.txt", i);
+            assertEquals(name, new String(Utils.readContents(
+                    new File(name))));
+        }
+        clearDirectory("dir");
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testRawBlobs() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        command("java", "gitlet.Main", "branch", "empty");
+        byte[] contents = new byte[ObjectStore.RAW_MIN + 1000];
+        new Random(61).nextBytes(contents);
+        File asset = new File("asset.bin");
+        Utils.writeContents(asset, contents);
+        command("java", "gitlet.Main", "add", "asset.bin");
+        command("java", "gitlet.Main", "commit", "asset");
+        ObjectId id = Utils.sha1Id(contents);
+        assertTrue(ObjectStore.rawFile(id).isFile());
+        command("java", "gitlet.Main", "gc");
+        assertTrue(ObjectStore.rawFile(id).isFile());
+        command("java", "gitlet.Main", "checkout", "empty");
+        assertTrue(!asset.exists());
+        command("java", "-Dgitlet.checkout.link=hardlink", "gitlet.Main",
+                "checkout", "master");
+        assertArrayEquals(contents, Utils.readContents(asset));
+        assertEquals(2, Files.getAttribute(asset.toPath(),
+                "unix:nlink"));
+        assertArrayEquals(contents, ObjectStore.read(id));
+        command("java", "gitlet.Main", "checkout", "empty");
+        command("java", "gitlet.Main", "checkout", "master");
+        assertArrayEquals(contents, Utils.readContents(asset));
+        asset.delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testServe() throws IOException, InterruptedException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        Process server = new ProcessBuilder("java", "gitlet.Main", "serve")
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        for (int i = 0; i < 200 && !Server.SOCKET.exists(); i += 1) {
+            Thread.sleep(50);
+        }
+        assertTrue(Server.SOCKET.exists());
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "commit1");
+        assertEquals("A server is already running.\n",
+                command("java", "gitlet.Main", "serve"));
+        Gitlet g = Gitlet.thisSystem();
+        assertEquals("commit1", g.getHead().getLog());
+        String id = g.getHead().getValue().toString();
+        assertEquals(id + "\n", command("java", "gitlet.Main", "find",
+                "commit1"));
+        for (int count : new int[] { -1, Server.MAX_ARGS + 1 }) {
+            try (SocketChannel client = SocketChannel.open(
+                    UnixDomainSocketAddress.of(Server.SOCKET.toPath()))) {
+                new DataOutputStream(Channels.newOutputStream(client))
+                    .writeInt(count);
+                client.shutdownOutput();
+                assertEquals("Malformed request.\n", new String(
+                        Channels.newInputStream(client).readAllBytes()));
+            }
+        }
+        assertEquals(id + "\n", command("java", "gitlet.Main", "find",
+                "commit1"));
+        assertEquals("Server stopped.\n", command("java", "gitlet.Main",
+                "serve", "--stop"));
+        server.waitFor();
+        assertTrue(!Server.SOCKET.exists());
+        assertEquals("No server is running.\n", command("java",
+                "gitlet.Main", "serve", "--stop"));
+        new File("test1.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        Utils.writeContents(new File("script.txt"), ("init\n"
+                + "# stage and commit\n"
+                + "add test1.txt\n\n"
+                + "commit \"first commit\"\n"
+                + "commit 'nothing new'\n"
+                + "find \"first commit\"\n").getBytes());
+        String out = command("java", "gitlet.Main", "--batch", "script.txt",
+                "--every", "2");
+        Gitlet g = Gitlet.thisSystem();
+        assertEquals("first commit", g.getHead().getLog());
+        assertEquals("---\n---\n---\nNo changes added to the commit.\n---\n"
+                + g.getHead().getValue() + "\n---\n", out);
+        assertEquals("Incorrect operands.\n", command("java", "gitlet.Main",
+                "--batch", "script.txt", "--every", "0"));
+        new File("test1.txt").delete();
+        new File("script.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    /**
+     * Two commits with the same message, made in one batch and so possibly
+     * within the same second, still get distinct ids and are logged newest
+     * first.
+     */
+    @Test
+    public void testBatchSameMessage() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        Utils.writeContents(new File("a.txt"), "a\n".getBytes());
+        Utils.writeContents(new File("b.txt"), "b\n".getBytes());
+        Utils.writeContents(new File("script.txt"), ("init\n"
+                + "add a.txt\n"
+                + "commit same\n"
+                + "add b.txt\n"
+                + "commit same\n").getBytes());
+        command("java", "gitlet.Main", "--batch", "script.txt");
+        Gitlet g = Gitlet.thisSystem();
+        Commit second = g.getHead();
+        Commit first = second.getParent();
+        assertEquals("same", second.getLog());
+        assertEquals("same", first.getLog());
+        assertTrue(!first.getValue().equals(second.getValue()));
+        String[] log = command("java", "gitlet.Main", "log")
+            .split("===\n");
+        assertEquals(4, log.length);
+        assertTrue(log[1].startsWith("Commit " + second.getValue() + "\n"));
+        assertTrue(log[2].startsWith("Commit " + first.getValue() + "\n"));
+        assertTrue(log[3].endsWith("initial commit\n\n"));
+        new File("a.txt").delete();
+        new File("b.txt").delete();
+        new File("script.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    /**
+     * A commit message longer than 64 KB is recorded whole and can be
+     * found again.
+     */
+    @Test
+    public void testLongMessage() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        char[] chars = new char[70000];
+        Arrays.fill(chars, 'x');
+        String message = new String(chars);
+        assertEquals("", command("java", "gitlet.Main", "commit", message));
+        Commit head = Gitlet.thisSystem().getHead();
+        assertEquals(message, head.getLog());
+        assertEquals(head.getValue() + "\n", command("java", "gitlet.Main",
+                "find", message));
+        new File("test1.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    /**
+     * A repository in the single-file format of older versions is refused
+     * with a message rather than read, and is left as it was.
+     */
+    @Test
+    public void testLegacyFormat() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet/data").mkdirs();
+        File data = new File(".gitlet/data/data");
+        Utils.writeContents(data, "old".getBytes());
+        String unsupported = "Unsupported repository format: .gitlet was"
+            + " made by an older gitlet. Move it aside and run init.\n";
+        assertEquals(unsupported, command("java", "gitlet.Main", "status"));
+        assertEquals(unsupported, command("java", "gitlet.Main", "log"));
+        assertEquals(unsupported, command("java", "gitlet.Main", "init"));
+        assertEquals(Arrays.asList("data"),
+                Arrays.asList(new File(".gitlet/data").list()));
+        assertEquals("old", new String(Utils.readContents(data)));
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        Utils.writeContents(new File("test1.txt"), "Small step\n".getBytes());
+        String out = command("java", "gitlet.Main", "--stats", "add",
+                "test1.txt");
+        assertTrue(out.startsWith("=== Statistics ===\n"));
+        for (String name : new String[] { "command.add", "repository.load",
+                                           "repository.save", "sha1.file" }) {
+            assertTrue(name, out.contains("\n" + name + " "));
+        }
+        assertTrue(out.contains("commit cache: "));
+        String status = command("java", "gitlet.Main", "status");
+        assertEquals(status + "=== Statistics ===",
+                command("java", "gitlet.Main", "--stats", "status")
+                .split("\n=== Statistics", 2)[0] + "\n=== Statistics ===");
+        new File("test1.txt").delete();
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
+    @Test
+    public void testDiff() throws IOException {
+        clearDirectory(".gitlet");
+        clearWorkingDirectory();
+        new File(".gitlet").delete();
+        command("java", "gitlet.Main", "init");
+        File file = new File("test1.txt");
+        Utils.writeContents(file, ("a\nb\nc\nd\ne\nf\ng\nh\ni\nj\n"
+                + "k\nl\n").getBytes());
+        command("java", "gitlet.Main", "add", "test1.txt");
+        command("java", "gitlet.Main", "commit", "letters");
+        String first = Gitlet.thisSystem().getHead().getValue().toString();
+        assertEquals("", command("java", "gitlet.Main", "diff"));
+        Utils.writeContents(file, ("a\nb\nC\nd\ne\nf\ng\nh\ni\nj\n"
+                + "k\nl\nm").getBytes());
+        String change = "diff a/test1.txt b/test1.txt\n"
+            + "--- a/test1.txt\n+++ b/test1.txt\n"
+            + "@@ -1,6 +1,6 @@\n a\n b\n-c\n+C\n d\n e\n f\n"
+            + "@@ -10,3 +10,4 @@\n j\n k\n l\n+m\n"
+            + "\\ No newline at end of file\n";
+        assertEquals(change, command("java", "gitlet.Main", "diff"));
+        assertEquals(change, command("java", "gitlet.Main", "diff", "HEAD"));
+        command("java", "gitlet.Main", "add", "test1.txt");
+        assertEquals("", command("java", "gitlet.Main", "diff"));
+        assertEquals(change, command("java", "gitlet.Main", "diff",
+                "master"));
+        command("java", "gitlet.Main", "commit", "capital");
+        assertEquals(change, command("java", "gitlet.Main", "diff", first,
+                "master"));
+        command("java", "gitlet.Main", "rm", "test1.txt");
+        assertEquals("diff a/test1.txt b/test1.txt\n"
+                + "--- a/test1.txt\n+++ /dev/null\n@@ -1,13 +0,0 @@\n"
+                + "-a\n-b\n-C\n-d\n-e\n-f\n-g\n-h\n-i\n-j\n-k\n-l\n"
+                + "-m\n"
+                + "\\ No newline at end of file\n",
+                command("java", "gitlet.Main", "diff", "HEAD"));
+        assertEquals("Incorrect operands.\n", command("java", "gitlet.Main",
+                "diff", "HEAD", "HEAD", "HEAD"));
+        clearDirectory(".gitlet");
+        restoreWorkingDirectory();
+    }
+
     private static String command(String... args) {
         try {
             StringBuilder results = new StringBuilder();
@@ -0,0 +1,352 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * The index: one binary file, .gitlet/index, recording for every tracked or
+ * staged file the blob it is tracked as, the blob staged for it, and the
+ * size, modification time, inode and blob id last seen for the working
+ * copy. A working file whose size, time and inode are unchanged is known to
+ * hold that blob without being read again.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Index {
+
+    /** The index file. */
+    static final File FILE = new File(".gitlet/index");
+
+    /** Magic number at the start of the index. */
+    private static final int MAGIC = 0x47494e58;
+
+    /** Version of the index format. */
+    private static final int VERSION = 1;
+
+    /** Fewest files whose working copies are hashed in parallel. */
+    private static final int PARALLEL_HASH = 64;
+
+    /** Flag bits for the parts of an entry that are present. */
+    private static final int TRACKED = 1, STAGED = 2, STAT = 4;
+
+    /** What the index knows about one file. */
+    private static class Entry {
+        /** Blob the file is tracked as, or null. */
+        private ObjectId _tracked;
+        /** Blob staged for the file, or null. */
+        private ObjectId _staged;
+        /** Blob last seen in the working file, or null if not known. */
+        private ObjectId _working;
+        /** Size, modification time and inode of the working file when
+         *  _working was recorded. */
+        private long _size, _mtime, _inode;
+    }
+
+    /** Return the index of this repository, empty if there is none yet. */
+    static Index read() {
+        Index index = new Index();
+        if (!FILE.isFile()) {
+            return index;
+        }
+        index._written = FILE.lastModified();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(FILE)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown format of " + FILE);
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                Entry entry = new Entry();
+                String name = in.readUTF();
+                int flags = in.readByte();
+                if ((flags & TRACKED) != 0) {
+                    entry._tracked = ObjectId.read(in);
+                }
+                if ((flags & STAGED) != 0) {
+                    entry._staged = ObjectId.read(in);
+                }
+                if ((flags & STAT) != 0) {
+                    entry._working = ObjectId.read(in);
+                    entry._size = in.readLong();
+                    entry._mtime = in.readLong();
+                    entry._inode = in.readLong();
+                }
+                index._entries.put(name, entry);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return index;
+    }
+
+    /** Write this index back to FILE if it has changed. */
+    void write() {
+        if (!_changed) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(FILE)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeByte((entry._tracked != null ? TRACKED : 0)
+                        | (entry._staged != null ? STAGED : 0)
+                        | (entry._working != null ? STAT : 0));
+                if (entry._tracked != null) {
+                    entry._tracked.write(out);
+                }
+                if (entry._staged != null) {
+                    entry._staged.write(out);
+                }
+                if (entry._working != null) {
+                    entry._working.write(out);
+                    out.writeLong(entry._size);
+                    out.writeLong(entry._mtime);
+                    out.writeLong(entry._inode);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _changed = false;
+        _written = FILE.lastModified();
+    }
+
+    /** Return true if NAME is tracked. */
+    boolean isTracked(String name) {
+        return tracked(name) != null;
+    }
+
+    /** Return the blob NAME is tracked as, or null if it is not tracked. */
+    ObjectId tracked(String name) {
+        Entry entry = _entries.get(name);
+        return entry == null ? null : entry._tracked;
+    }
+
+    /** Return true if NAME is staged. */
+    boolean isStaged(String name) {
+        return staged(name) != null;
+    }
+
+    /** Return the blob staged for NAME, or null if it is not staged. */
+    ObjectId staged(String name) {
+        Entry entry = _entries.get(name);
+        return entry == null ? null : entry._staged;
+    }
+
+    /** Track NAME as blob ID. */
+    void track(String name, ObjectId id) {
+        entry(name)._tracked = id;
+        _changed = true;
+    }
+
+    /** Stop tracking NAME. */
+    void untrack(String name) {
+        Entry entry = _entries.get(name);
+        if (entry != null && entry._tracked != null) {
+            entry._tracked = null;
+            prune(name, entry);
+        }
+    }
+
+    /** Stage blob ID for NAME. */
+    void stage(String name, ObjectId id) {
+        entry(name)._staged = id;
+        _changed = true;
+    }
+
+    /** Unstage NAME. */
+    void unstage(String name) {
+        Entry entry = _entries.get(name);
+        if (entry != null && entry._staged != null) {
+            entry._staged = null;
+            prune(name, entry);
+        }
+    }
+
+    /** Return the names of all tracked files, in sorted order. */
+    List<String> trackedNames() {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+            if (e.getValue()._tracked != null) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Return the names of all staged files, in sorted order. */
+    List<String> stagedNames() {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+            if (e.getValue()._staged != null) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Stop tracking every file. */
+    void clearTracked() {
+        for (String name : trackedNames()) {
+            untrack(name);
+        }
+    }
+
+    /** Unstage every file. */
+    void clearStaged() {
+        for (String name : stagedNames()) {
+            unstage(name);
+        }
+    }
+
+    /**
+     * Return the blob id of the working file NAME, which must exist. If NAME
+     * has an entry whose recorded size, modification time and inode match
+     * the file, the recorded id is returned without reading the file.
+     */
+    ObjectId workingId(String name) {
+        File file = new File(name);
+        Entry entry = _entries.get(name);
+        long[] stat = stat(file);
+        if (isFresh(entry, stat)) {
+            return entry._working;
+        }
+        ObjectId id = Utils.sha1(file);
+        if (entry != null) {
+            setWorking(entry, id, stat);
+        }
+        return id;
+    }
+
+    /**
+     * Return the blob ids of the working files NAMES, in the order of
+     * NAMES, as workingId would, with null for files that do not exist.
+     * When there are many, the files are examined and hashed in parallel on
+     * the common ForkJoinPool; what is learned is recorded afterwards on
+     * this thread.
+     */
+    List<ObjectId> workingIds(List<String> names) {
+        int n = names.size();
+        ObjectId[] ids = new ObjectId[n];
+        long[][] stats = new long[n][];
+        IntStream range = IntStream.range(0, n);
+        if (n >= PARALLEL_HASH) {
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            File file = new File(names.get(i));
+            if (!file.exists()) {
+                return;
+            }
+            Entry entry = _entries.get(names.get(i));
+            long[] stat = stat(file);
+            if (isFresh(entry, stat)) {
+                ids[i] = entry._working;
+            } else {
+                ids[i] = Utils.sha1(file);
+                stats[i] = stat;
+            }
+        });
+        for (int i = 0; i < n; i += 1) {
+            Entry entry = _entries.get(names.get(i));
+            if (stats[i] != null && entry != null) {
+                setWorking(entry, ids[i], stats[i]);
+            }
+        }
+        return Arrays.asList(ids);
+    }
+
+    /** Record that the working file NAME, if it has an entry, holds ID. */
+    void recordWorking(String name, ObjectId id) {
+        Entry entry = _entries.get(name);
+        if (entry != null) {
+            setWorking(entry, id, stat(new File(name)));
+        }
+    }
+
+    /**
+     * Return true if ENTRY records the blob of a working file whose size,
+     * modification time and inode are STAT.
+     */
+    private boolean isFresh(Entry entry, long[] stat) {
+        return entry != null && entry._working != null
+            && entry._size == stat[0] && entry._mtime == stat[1]
+            && entry._inode == stat[2] && stat[1] < _written;
+    }
+
+    /** Record ID and STAT as the last seen state of ENTRY's file. */
+    private void setWorking(Entry entry, ObjectId id, long[] stat) {
+        entry._working = id;
+        entry._size = stat[0];
+        entry._mtime = stat[1];
+        entry._inode = stat[2];
+        _changed = true;
+    }
+
+    /**
+     * Return the size, modification time and inode (0 where the file
+     * system has none) of FILE.
+     */
+    private static long[] stat(File file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(),
+                    BasicFileAttributes.class);
+            long inode = 0;
+            try {
+                Object ino = Files.getAttribute(file.toPath(), "unix:ino");
+                inode = ((Number) ino).longValue();
+            } catch (UnsupportedOperationException
+                     | IllegalArgumentException excp) {
+                inode = 0;
+            }
+            return new long[] { attrs.size(),
+                attrs.lastModifiedTime().toMillis(), inode };
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the entry for NAME, creating it if needed. */
+    private Entry entry(String name) {
+        return _entries.computeIfAbsent(name, k -> new Entry());
+    }
+
+    /** Drop ENTRY, the entry of NAME, if it is neither tracked nor staged. */
+    private void prune(String name, Entry entry) {
+        if (entry._tracked == null && entry._staged == null) {
+            _entries.remove(name);
+        }
+        _changed = true;
+    }
+
+    /** Entries, keyed and sorted by file name. */
+    private TreeMap<String, Entry> _entries = new TreeMap<String, Entry>();
+
+    /** True if this index differs from FILE. */
+    private boolean _changed;
+
+    /**
+     * Modification time of FILE when last read or written. Working files
+     * changed at or after it may have changed without their stat data
+     * changing, and are hashed again.
+     */
+    private long _written;
+
+}
@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An inverted index from the words of commit messages to the commits whose
+ * messages contain them. Each word is appended, with the id of its commit,
+ * to one of BUCKETS small files under .gitlet/messages chosen by the word's
+ * hash, so that looking a word up reads one bucket. The index only narrows
+ * the commits to examine: callers still compare the full messages. It is
+ * rebuilt from the commit records if it is missing.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class MessageIndex {
+
+    /** The directory of bucket files. */
+    static final File MESSAGES = new File(".gitlet/messages");
+
+    /** Number of bucket files. */
+    static final int BUCKETS = 256;
+
+    /**
+     * Longest word indexed, in characters; longer words are cut to it, well
+     * within the limit of DataOutput.writeUTF.
+     */
+    static final int MAX_WORD = 1024;
+
+    /** Record that commit ID has the message LOG. */
+    static void add(ObjectId id, String log) {
+        if (!MESSAGES.isDirectory()) {
+            rebuild();
+            return;
+        }
+        HashMap<Integer, Set<String>> buckets =
+            new HashMap<Integer, Set<String>>();
+        for (String word : words(log)) {
+            buckets.computeIfAbsent(bucket(word), k -> new TreeSet<String>())
+                .add(word);
+        }
+        for (Map.Entry<Integer, Set<String>> e : buckets.entrySet()) {
+            append(e.getKey(), e.getValue(), id);
+        }
+    }
+
+    /**
+     * Return the ids, in sorted order, of all commits whose messages
+     * contain every one of WORDS, which must not be empty.
+     */
+    static List<ObjectId> candidates(List<String> words) {
+        if (!MESSAGES.isDirectory()) {
+            rebuild();
+        }
+        Set<ObjectId> result = null;
+        for (String word : new TreeSet<String>(words)) {
+            Set<ObjectId> ids = lookup(word);
+            if (result == null) {
+                result = ids;
+            } else {
+                result.retainAll(ids);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        List<ObjectId> sorted = new ArrayList<ObjectId>(result);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Return the words of TEXT: its maximal runs of letters and digits,
+     * in lower case and in order, each cut to at most MAX_WORD characters.
+     */
+    static List<String> words(String text) {
+        List<String> result = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i += 1) {
+            boolean inWord = i < text.length()
+                && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                result.add(text.substring(start,
+                        Math.min(i, start + MAX_WORD)).toLowerCase());
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /** Rebuild the index from all commit records. */
+    static void rebuild() {
+        File[] old = MESSAGES.listFiles();
+        if (old != null) {
+            for (File file : old) {
+                file.delete();
+            }
+        }
+        MESSAGES.mkdirs();
+        for (ObjectId id : Commit.allIds()) {
+            add(id, Commit.load(id).getLog());
+        }
+    }
+
+    /** Return the ids of the commits whose messages contain WORD. */
+    private static Set<ObjectId> lookup(String word) {
+        Set<ObjectId> result = new HashSet<ObjectId>();
+        File file = bucketFile(bucket(word));
+        if (!file.isFile()) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            while (true) {
+                String entry = in.readUTF();
+                ObjectId id = ObjectId.read(in);
+                if (entry.equals(word)) {
+                    result.add(id);
+                }
+            }
+        } catch (EOFException excp) {
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append an entry for each of WORDS and ID to bucket file BUCKET. */
+    private static void append(int bucket, Set<String> words, ObjectId id) {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(
+                        bucketFile(bucket), true)))) {
+            for (String word : words) {
+                out.writeUTF(word);
+                id.write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the bucket holding WORD. */
+    private static int bucket(String word) {
+        int h = word.hashCode();
+        return (h ^ (h >>> 8) ^ (h >>> 16) ^ (h >>> 24)) & (BUCKETS - 1);
+    }
+
+    /** Return the file of bucket BUCKET. */
+    private static File bucketFile(int bucket) {
+        return new File(MESSAGES, String.format("%02x", bucket));
+    }
+
+}
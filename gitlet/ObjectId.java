@@ -0,0 +1,222 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An immutable SHA-1 id of a commit or blob, held as its raw 20 bytes packed
+ * into two longs and an int rather than as a 40-character hex string.
+ * Equality, hashing and ordering work on the raw bytes; hex is produced only
+ * when an id is printed or used as a file name.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** Length of an id in bytes. */
+    static final int LENGTH = 20;
+
+    /** Length of an id as a hex numeral. */
+    static final int HEX_LENGTH = 2 * LENGTH;
+
+    /** Lower-case hex digits. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** An id made of the words W1, W2 and W3, most significant first. */
+    private ObjectId(long w1, long w2, int w3) {
+        _w1 = w1;
+        _w2 = w2;
+        _w3 = w3;
+    }
+
+    /** Return the id whose raw bytes are RAW[OFFSET..OFFSET+LENGTH). */
+    static ObjectId fromRaw(byte[] raw, int offset) {
+        return new ObjectId(getLong(raw, offset), getLong(raw, offset + 8),
+                (int) getBytes(raw, offset + 16, 4));
+    }
+
+    /** Return the id whose raw bytes are RAW. */
+    static ObjectId fromRaw(byte[] raw) {
+        return fromRaw(raw, 0);
+    }
+
+    /**
+     * Return the id denoted by the HEX_LENGTH hex digits HEX. Throws
+     * IllegalArgumentException if HEX is not such a numeral.
+     */
+    static ObjectId fromHex(CharSequence hex) {
+        if (hex.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("bad object id: " + hex);
+        }
+        return new ObjectId(parse(hex, 0, 16), parse(hex, 16, 16),
+                (int) parse(hex, 32, 8));
+    }
+
+    /** Return true if S is a complete hex id. */
+    static boolean isId(CharSequence s) {
+        if (s.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Read an id in its raw form from IN. */
+    static ObjectId read(DataInput in) throws IOException {
+        return new ObjectId(in.readLong(), in.readLong(), in.readInt());
+    }
+
+    /** Write this id in its raw form to OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(_w1);
+        out.writeLong(_w2);
+        out.writeInt(_w3);
+    }
+
+    /** Copy the raw bytes of this id into DEST starting at OFFSET. */
+    void copyRawTo(byte[] dest, int offset) {
+        for (int i = 0; i < LENGTH; i += 1) {
+            dest[offset + i] = (byte) byteAt(i);
+        }
+    }
+
+    /** Return the Kth byte of this id, as an unsigned value. */
+    int byteAt(int k) {
+        if (k < 8) {
+            return (int) (_w1 >>> (56 - 8 * k)) & 0xff;
+        } else if (k < 16) {
+            return (int) (_w2 >>> (56 - 8 * (k - 8))) & 0xff;
+        } else {
+            return (_w3 >>> (24 - 8 * (k - 16))) & 0xff;
+        }
+    }
+
+    /** Return the Kth hex digit of this id, as a value in 0..15. */
+    int nibbleAt(int k) {
+        int b = byteAt(k / 2);
+        return k % 2 == 0 ? b >>> 4 : b & 0xf;
+    }
+
+    /**
+     * Return true if the hex numeral PREFIX (of any length up to
+     * HEX_LENGTH) is a prefix of this id.
+     */
+    boolean startsWith(CharSequence prefix) {
+        if (prefix.length() > HEX_LENGTH) {
+            return false;
+        }
+        for (int k = 0; k < prefix.length(); k += 1) {
+            if (Character.digit(prefix.charAt(k), 16) != nibbleAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare this id with the first min(HEX_LENGTH, length) digits of the
+     * hex numeral PREFIX, returning a negative, zero or positive value as
+     * this id's leading digits are less, equal to or greater than PREFIX.
+     */
+    int comparePrefix(CharSequence prefix) {
+        int n = Math.min(prefix.length(), HEX_LENGTH);
+        for (int k = 0; k < n; k += 1) {
+            int diff = nibbleAt(k) - Character.digit(prefix.charAt(k), 16);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Write this id in hex into DEST starting at OFFSET. */
+    void copyHexTo(char[] dest, int offset) {
+        for (int i = 0; i < LENGTH; i += 1) {
+            int b = byteAt(i);
+            dest[offset + 2 * i] = DIGITS[b >>> 4];
+            dest[offset + 2 * i + 1] = DIGITS[b & 0xf];
+        }
+    }
+
+    /** Append this id in hex to OUT. */
+    void appendTo(StringBuilder out) {
+        for (int i = 0; i < LENGTH; i += 1) {
+            int b = byteAt(i);
+            out.append(DIGITS[b >>> 4]).append(DIGITS[b & 0xf]);
+        }
+    }
+
+    /** Return this id as a lower-case hex numeral. */
+    @Override
+    public String toString() {
+        char[] hex = new char[HEX_LENGTH];
+        copyHexTo(hex, 0);
+        return new String(hex);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w1 == other._w1 && _w2 == other._w2 && _w3 == other._w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w1 >>> 32);
+    }
+
+    /** Order ids by their raw bytes, as unsigned numbers. */
+    @Override
+    public int compareTo(ObjectId other) {
+        int cmp = Long.compareUnsigned(_w1, other._w1);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(_w2, other._w2);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w3, other._w3);
+        }
+        return cmp;
+    }
+
+    /** Return the big-endian long at RAW[OFFSET..OFFSET+8). */
+    private static long getLong(byte[] raw, int offset) {
+        return getBytes(raw, offset, 8);
+    }
+
+    /** Return the big-endian value of the N bytes of RAW at OFFSET. */
+    private static long getBytes(byte[] raw, int offset, int n) {
+        long result = 0;
+        for (int i = 0; i < n; i += 1) {
+            result = (result << 8) | (raw[offset + i] & 0xff);
+        }
+        return result;
+    }
+
+    /** Return the value of the N hex digits of HEX starting at START. */
+    private static long parse(CharSequence hex, int start, int n) {
+        long result = 0;
+        for (int i = start; i < start + n; i += 1) {
+            int d = Character.digit(hex.charAt(i), 16);
+            if (d < 0) {
+                throw new IllegalArgumentException("bad object id: " + hex);
+            }
+            result = (result << 4) | d;
+        }
+        return result;
+    }
+
+    /** The raw bytes 0-7, 8-15 and 16-19 of this id. */
+    private final long _w1, _w2;
+
+    /** See _w1. */
+    private final int _w3;
+
+}
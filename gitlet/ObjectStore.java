@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed store of file contents (blobs) and of Trees. Each
+ * object is kept once under .gitlet/objects, in a fan-out subdirectory
+ * named by the first two characters of its SHA-1, and is shared by every
+ * commit that refers to it. Objects are zlib-compressed on disk; blobs are
+ * hashed, compressed and written in one streaming pass, and inflated
+ * straight into their destination. A large blob that does not compress,
+ * such as an image or an archive, is kept raw instead, in a file with the
+ * suffix ".raw", and is never packed; checking it out is a plain copy of
+ * that file, which Checkout may do with transferTo or by linking to it.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class ObjectStore {
+
+    /** The directory holding all objects. */
+    static final File OBJECTS = new File(".gitlet/objects");
+
+    /** Suffix of the files of raw blobs. */
+    static final String RAW_SUFFIX = ".raw";
+
+    /** Smallest blob that may be stored raw, in bytes. */
+    static final int RAW_MIN = 64 * 1024;
+
+    /** Return the file that holds (or would hold) the object ID. */
+    static File objectFile(ObjectId id) {
+        char[] hex = new char[ObjectId.HEX_LENGTH];
+        id.copyHexTo(hex, 0);
+        return new File(new File(OBJECTS, new String(hex, 0, 2)),
+                new String(hex, 2, hex.length - 2));
+    }
+
+    /** Return the file that holds (or would hold) the raw blob ID. */
+    static File rawFile(ObjectId id) {
+        File file = objectFile(id);
+        return new File(file.getParentFile(), file.getName() + RAW_SUFFIX);
+    }
+
+    /** Return true if the blob ID is stored raw. */
+    static boolean isRaw(ObjectId id) {
+        return rawFile(id).isFile();
+    }
+
+    /**
+     * Return true if the object ID is in the store. The pack index is
+     * consulted first, so packed objects need no file system probe.
+     */
+    static boolean contains(ObjectId id) {
+        return inPack(id) || isLoose(id);
+    }
+
+    /** Return true if the object ID is in the pack. */
+    private static boolean inPack(ObjectId id) {
+        return pack() != null && pack().contains(id);
+    }
+
+    /** Return true if the object ID is stored as a loose object. */
+    static boolean isLoose(ObjectId id) {
+        return objectFile(id).isFile() || isRaw(id);
+    }
+
+    /**
+     * Return the pack of this repository, or null if there is none. The
+     * pack may be wanted by several checkout threads at once.
+     */
+    private static synchronized Pack pack() {
+        if (_pack == null && Pack.INDEX_FILE.isFile()) {
+            try {
+                _pack = new Pack();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return _pack;
+    }
+
+    /** Forget the cached pack, so that it is read again when next needed. */
+    static synchronized void reloadPack() {
+        _pack = null;
+    }
+
+    /**
+     * Store the contents of FILE, unless an identical blob is already
+     * present, and return its id.
+     */
+    static ObjectId put(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return put(in, file);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Store CONTENTS, unless an identical object is already present, and
+     * return its id. The contents are hashed first, so nothing is written
+     * for an object that exists.
+     */
+    static ObjectId put(byte[] contents) {
+        ObjectId id = Utils.sha1Id(contents);
+        if (!contains(id)) {
+            try {
+                put(new ByteArrayInputStream(contents), null);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Hash, compress and write everything in IN to a temporary file, then
+     * move it into place under its id, which is returned. The temporary
+     * copy is discarded if the blob was already present. If SOURCE, the
+     * file IN reads, is not null, is at least RAW_MIN bytes long and
+     * compresses by less than a tenth, it is stored raw instead.
+     */
+    private static ObjectId put(InputStream in, File source)
+        throws IOException {
+        OBJECTS.mkdirs();
+        File temp = File.createTempFile("tmp-", null, OBJECTS);
+        MessageDigest md = Utils.sha1Digest();
+        try (DigestInputStream din = new DigestInputStream(in, md);
+             OutputStream out = new DeflaterOutputStream(
+                     new FileOutputStream(temp))) {
+            Utils.copy(din, out);
+        } catch (IOException excp) {
+            temp.delete();
+            throw excp;
+        }
+        ObjectId id = ObjectId.fromRaw(md.digest());
+        File dest = objectFile(id);
+        if (contains(id)) {
+            temp.delete();
+        } else if (source != null && source.length() >= RAW_MIN
+                   && temp.length() > source.length() / 10 * 9) {
+            copyRaw(source, temp);
+            dest = rawFile(id);
+            dest.getParentFile().mkdirs();
+            if (!temp.renameTo(dest)) {
+                temp.delete();
+            }
+        } else {
+            dest.getParentFile().mkdirs();
+            if (!temp.renameTo(dest)) {
+                temp.delete();
+            }
+        }
+        return id;
+    }
+
+    /** Replace the contents of TEMP with those of SOURCE. */
+    private static void copyRaw(File source, File temp) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                 StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp.toPath(),
+                 StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            Checkout.transfer(in, out);
+        }
+    }
+
+    /** Return a stream of the (inflated) contents of object ID. */
+    static InputStream open(ObjectId id) throws IOException {
+        if (isRaw(id)) {
+            return new FileInputStream(rawFile(id));
+        } else if (inPack(id)) {
+            return pack().open(id);
+        }
+        return new InflaterInputStream(new FileInputStream(objectFile(id)));
+    }
+
+    /** Return the contents of object ID. */
+    static byte[] read(ObjectId id) {
+        try (InputStream in = open(id)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Utils.copy(in, out);
+            return out.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Write the contents of object ID to DEST, inflating through a bounded
+     * buffer rather than holding the blob in memory. A raw blob is copied
+     * or linked by Checkout.
+     */
+    static void checkout(ObjectId id, File dest) {
+        prepareWorkingFile(dest);
+        if (isRaw(id)) {
+            Checkout.copyRaw(rawFile(id), dest);
+            return;
+        }
+        try (InputStream in = open(id);
+             OutputStream out = new FileOutputStream(dest)) {
+            Utils.copy(in, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Make ready to write the working file DEST: refuse if it is a
+     * directory, create the directory holding it, and delete it if it is
+     * read-only or has other links, as a hard link into the store does, so
+     * that writing it cannot change an object.
+     */
+    static void prepareWorkingFile(File dest) {
+        if (dest.isDirectory()) {
+            throw new IllegalArgumentException("cannot overwrite directory");
+        }
+        File parent = dest.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        if (dest.isFile() && (!dest.canWrite() || links(dest) > 1)) {
+            dest.delete();
+        }
+    }
+
+    /** Return the number of hard links to FILE, or 1 if not known. */
+    private static int links(File file) {
+        try {
+            return (Integer) Files.getAttribute(file.toPath(), "unix:nlink");
+        } catch (IOException | UnsupportedOperationException
+                 | IllegalArgumentException excp) {
+            return 1;
+        }
+    }
+
+    /** The pack of this repository, once it has been read. */
+    private static Pack _pack;
+
+}
@@ -0,0 +1,542 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A packfile holding many objects in one file. Successive versions of the
+ * same path are stored as deltas against the next newer version, so long
+ * histories of slowly changing files take little space. Delta chains are
+ * bounded by MAX_DEPTH so that reading an object stays cheap.
+ *
+ * The pack is a header followed by entries; each entry is a type byte, the
+ * offset of its base (for deltas), the inflated length, the stored length
+ * and the deflated data. The accompanying PackIndex maps every object id to
+ * the offset of its entry. Blobs that the ObjectStore keeps raw are left
+ * out of the pack and stay loose.
+ *
+ * The pack is mapped into memory. Objects of up to STREAM_MIN bytes are
+ * inflated whole; larger ones are streamed, inflating straight from the
+ * mapped entry, so that they never have to fit in the heap. A large delta
+ * is applied to its base, itself streamed into a temporary file and
+ * mapped, into another temporary file, which is read as the object.
+ * Likewise, repacking deflates objects of more than STREAM_MIN bytes
+ * straight into the pack, storing them whole rather than as deltas.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Pack {
+
+    /** The directory holding the pack and its index. */
+    static final File PACK_DIR = new File(ObjectStore.OBJECTS, "pack");
+
+    /** The packfile. */
+    static final File PACK_FILE = new File(PACK_DIR, "pack.pack");
+
+    /** The index of the packfile. */
+    static final File INDEX_FILE = new File(PACK_DIR, "pack.idx");
+
+    /** Magic number at the start of a packfile. */
+    private static final int MAGIC = 0x47504b31;
+
+    /** Entry type of an object stored whole. */
+    static final int FULL = 1;
+
+    /** Entry type of an object stored as a delta against another entry. */
+    static final int DELTA = 2;
+
+    /** Longest chain of deltas that must be applied to read an object. */
+    static final int MAX_DEPTH = 10;
+
+    /** Largest object, in bytes, that is read into memory whole. */
+    static final int STREAM_MIN = 1 << 20;
+
+    /** Open the pack in PACK_DIR, whose index must exist. */
+    Pack() throws IOException {
+        _index = new PackIndex(INDEX_FILE);
+        _map = map(PACK_FILE);
+    }
+
+    /** The header of an entry of the pack. */
+    private static final class Entry {
+        /** FULL or DELTA. */
+        private int _type;
+        /** The offset of the base of a delta. */
+        private long _base;
+        /** The inflated length of the data. */
+        private int _length;
+        /** The stored (deflated) length of the data. */
+        private int _stored;
+        /** The position of the stored data in the pack. */
+        private int _data;
+    }
+
+    /** Return true if this pack holds object ID. */
+    boolean contains(ObjectId id) {
+        return _index.find(id) >= 0;
+    }
+
+    /** Return the ids of all objects in this pack. */
+    List<ObjectId> ids() {
+        List<ObjectId> result = new ArrayList<ObjectId>();
+        for (int i = 0; i < _index.size(); i += 1) {
+            result.add(_index.idAt(i));
+        }
+        return result;
+    }
+
+    /** Return the contents of object ID, or null if it is not here. */
+    byte[] read(ObjectId id) throws IOException {
+        long offset = _index.find(id);
+        if (offset < 0) {
+            return null;
+        }
+        return read(offset);
+    }
+
+    /**
+     * Return a stream of the contents of object ID, or null if it is not
+     * here.
+     */
+    InputStream open(ObjectId id) throws IOException {
+        long offset = _index.find(id);
+        if (offset < 0) {
+            return null;
+        }
+        return open(offset);
+    }
+
+    /** Return the header of the entry at OFFSET. */
+    private Entry entry(long offset) throws IOException {
+        if (offset < 0 || offset >= _map.limit()) {
+            throw new IOException("corrupt pack");
+        }
+        Entry entry = new Entry();
+        int pos = (int) offset;
+        entry._type = _map.get(pos);
+        pos += 1;
+        if (entry._type == DELTA) {
+            entry._base = _map.getLong(pos);
+            pos += 8;
+        }
+        entry._length = _map.getInt(pos);
+        entry._stored = _map.getInt(pos + 4);
+        entry._data = pos + 8;
+        return entry;
+    }
+
+    /** Return a stream of the inflated data of ENTRY. */
+    private DataInputStream inflate(Entry entry) {
+        ByteBuffer stored = _map.slice(entry._data, entry._stored);
+        return new DataInputStream(new InflaterInputStream(
+                new InputStream() {
+                    @Override
+                    public int read() {
+                        return stored.hasRemaining() ? stored.get() & 0xff : -1;
+                    }
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        if (!stored.hasRemaining()) {
+                            return -1;
+                        }
+                        int n = Math.min(len, stored.remaining());
+                        stored.get(b, off, n);
+                        return n;
+                    }
+                }));
+    }
+
+    /** Return the length of the object whose entry is ENTRY. */
+    private int length(Entry entry) throws IOException {
+        if (entry._type == FULL) {
+            return entry._length;
+        }
+        try (DataInputStream in = inflate(entry)) {
+            return Delta.readHeader(in)[1];
+        }
+    }
+
+    /** Return the contents of the object at OFFSET. */
+    private byte[] read(long offset) throws IOException {
+        Entry entry = entry(offset);
+        byte[] data = new byte[entry._length];
+        try (DataInputStream in = inflate(entry)) {
+            in.readFully(data);
+        }
+        if (entry._type == FULL) {
+            return data;
+        }
+        return Delta.apply(read(entry._base), data);
+    }
+
+    /** Return a stream of the contents of the object at OFFSET. */
+    private InputStream open(long offset) throws IOException {
+        Entry entry = entry(offset);
+        if (length(entry) <= STREAM_MIN) {
+            return new ByteArrayInputStream(read(offset));
+        } else if (entry._type == FULL) {
+            return inflate(entry);
+        }
+        ByteBuffer base = contents(entry._base);
+        File result = File.createTempFile("gitlet", ".obj");
+        try {
+            try (DataInputStream in = inflate(entry);
+                 OutputStream out = new BufferedOutputStream(
+                     new FileOutputStream(result), Utils.BUFFER_SIZE)) {
+                int[] header = Delta.readHeader(in);
+                if (header[0] != base.limit()) {
+                    throw new IOException("delta base mismatch");
+                }
+                Delta.apply(base, in, header[1], out);
+            }
+            return new FileInputStream(result);
+        } finally {
+            unlink(result);
+        }
+    }
+
+    /**
+     * Return the contents of the object at OFFSET: in memory if it is
+     * small, and otherwise streamed into a temporary file and mapped.
+     */
+    private ByteBuffer contents(long offset) throws IOException {
+        if (length(entry(offset)) <= STREAM_MIN) {
+            return ByteBuffer.wrap(read(offset));
+        }
+        File file = File.createTempFile("gitlet", ".base");
+        try {
+            try (InputStream in = open(offset)) {
+                Files.copy(in, file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            return map(file);
+        } finally {
+            unlink(file);
+        }
+    }
+
+    /**
+     * Delete the temporary FILE, which stays readable through any stream
+     * or mapping already open on it, or delete it on exit where open files
+     * cannot be deleted.
+     */
+    private static void unlink(File file) {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /** Return FILE mapped read-only into memory. */
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+    }
+
+    /**
+     * Pack every loose object and every object of the existing pack into a
+     * new pack, then remove the loose copies. COMMITS supply the path of
+     * each blob, so that versions of one path are deltified together. If
+     * KEEP is not null, objects that are neither in KEEP nor referred to by
+     * COMMITS are dropped instead.
+     */
+    static void repack(Collection<Commit> commits, Set<ObjectId> keep) {
+        try {
+            Pack old = INDEX_FILE.isFile() ? new Pack() : null;
+            List<List<ObjectId>> groups = groupByPath(commits);
+            HashSet<ObjectId> all = new HashSet<ObjectId>();
+            for (List<ObjectId> group : groups) {
+                all.addAll(group);
+            }
+            LinkedHashSet<ObjectId> rest = new LinkedHashSet<ObjectId>();
+            List<ObjectId> others = looseIds("");
+            if (old != null) {
+                others.addAll(old.ids());
+            }
+            for (ObjectId id : others) {
+                if (!all.contains(id) && (keep == null || keep.contains(id))) {
+                    rest.add(id);
+                }
+            }
+            for (ObjectId id : rest) {
+                groups.add(Arrays.asList(id));
+            }
+            write(groups, old);
+            for (ObjectId id : looseIds("")) {
+                ObjectStore.objectFile(id).delete();
+            }
+            if (keep != null) {
+                dropRaw(commits, keep);
+            }
+            dropEmptyDirs();
+            ObjectStore.reloadPack();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Return the blobs referred to by COMMITS, grouped by path, newest
+     * version first. Each blob appears once, under the newest commit that
+     * refers to it.
+     */
+    private static List<List<ObjectId>> groupByPath(
+            Collection<Commit> commits) {
+        List<Commit> sorted = new ArrayList<Commit>(commits);
+        sorted.sort(Comparator.comparing(Commit::getDate).reversed());
+        HashSet<ObjectId> seen = new HashSet<ObjectId>();
+        TreeMap<String, List<ObjectId>> paths =
+            new TreeMap<String, List<ObjectId>>();
+        for (Commit commit : sorted) {
+            for (String name : commit.getFiles().keySet()) {
+                ObjectId id = commit.getFiles().get(name);
+                if (seen.add(id) && !ObjectStore.isRaw(id)) {
+                    paths.computeIfAbsent(name, k -> new ArrayList<ObjectId>())
+                        .add(id);
+                }
+            }
+        }
+        return new ArrayList<List<ObjectId>>(paths.values());
+    }
+
+    /**
+     * Delete the raw blobs that are neither in KEEP nor referred to by
+     * COMMITS.
+     */
+    private static void dropRaw(Collection<Commit> commits,
+                                Set<ObjectId> keep) {
+        HashSet<ObjectId> used = new HashSet<ObjectId>(keep);
+        for (Commit commit : commits) {
+            used.addAll(commit.getFiles().values());
+        }
+        for (ObjectId id : looseIds(ObjectStore.RAW_SUFFIX)) {
+            if (!used.contains(id)) {
+                ObjectStore.rawFile(id).delete();
+            }
+        }
+    }
+
+    /** Delete the fan-out directories of OBJECTS left empty. */
+    private static void dropEmptyDirs() {
+        File[] dirs = ObjectStore.OBJECTS.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            String[] rest = dir.list();
+            if (dir.getName().length() == 2 && rest != null
+                    && rest.length == 0) {
+                dir.delete();
+            }
+        }
+    }
+
+    /**
+     * Return the ids of all loose objects whose file names end in SUFFIX:
+     * "" for compressed objects, or ObjectStore.RAW_SUFFIX for raw blobs.
+     */
+    private static List<ObjectId> looseIds(String suffix) {
+        List<ObjectId> result = new ArrayList<ObjectId>();
+        File[] dirs = ObjectStore.OBJECTS.listFiles();
+        if (dirs == null) {
+            return result;
+        }
+        for (File dir : dirs) {
+            if (dir.getName().length() != 2 || !dir.isDirectory()) {
+                continue;
+            }
+            for (String name : Utils.plainFilenamesIn(dir)) {
+                if (!name.endsWith(suffix)) {
+                    continue;
+                }
+                String hex = dir.getName()
+                    + name.substring(0, name.length() - suffix.length());
+                if (ObjectId.isId(hex)) {
+                    result.add(ObjectId.fromHex(hex));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write the objects of GROUPS into a new pack and index, reading them
+     * from the loose objects or from OLD. Each object of a group is a delta
+     * against its predecessor when that is worthwhile. Objects of more than
+     * STREAM_MIN bytes are streamed into the pack whole, and neither are
+     * nor serve as bases of deltas.
+     */
+    private static void write(List<List<ObjectId>> groups, Pack old)
+        throws IOException {
+        PACK_DIR.mkdirs();
+        File packTemp = new File(PACK_DIR, "pack.pack.tmp");
+        TreeMap<ObjectId, Long> offsets = new TreeMap<ObjectId, Long>();
+        try (RandomAccessFile out = new RandomAccessFile(packTemp, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            for (List<ObjectId> group : groups) {
+                byte[] base = null;
+                long baseOffset = -1;
+                int depth = 0;
+                for (ObjectId id : group) {
+                    long offset = out.getFilePointer();
+                    offsets.put(id, offset);
+                    byte[] data;
+                    try (InputStream in = ObjectStore.isLoose(id)
+                             ? ObjectStore.open(id) : old.open(id)) {
+                        data = in.readNBytes(STREAM_MIN + 1);
+                        if (data.length > STREAM_MIN) {
+                            out.writeByte(FULL);
+                            writeData(out, data, in);
+                            base = null;
+                            continue;
+                        }
+                    }
+                    byte[] delta = null;
+                    if (base != null && depth < MAX_DEPTH) {
+                        delta = Delta.create(base, data);
+                        if (delta.length >= data.length / 2) {
+                            delta = null;
+                        }
+                    }
+                    if (delta == null) {
+                        out.writeByte(FULL);
+                        writeData(out, data, null);
+                        depth = 0;
+                    } else {
+                        out.writeByte(DELTA);
+                        out.writeLong(baseOffset);
+                        writeData(out, delta, null);
+                        depth += 1;
+                    }
+                    base = data;
+                    baseOffset = offset;
+                }
+            }
+        }
+        File indexTemp = new File(PACK_DIR, "pack.idx.tmp");
+        PackIndex.write(indexTemp, offsets);
+        replace(packTemp, indexTemp);
+    }
+
+    /**
+     * Replace the pack and its index by PACKTEMP and INDEXTEMP. Each is
+     * moved into place atomically, the index last, so that the index in
+     * place never names a pack that is missing. The old pack is kept under
+     * another name, a link where links are supported, until then and put
+     * back if either move fails, keeping the old pair.
+     */
+    private static void replace(File packTemp, File indexTemp)
+        throws IOException {
+        File packOld = new File(PACK_DIR, "pack.pack.old");
+        boolean saved = PACK_FILE.isFile();
+        if (saved) {
+            packOld.delete();
+            try {
+                Files.createLink(packOld.toPath(), PACK_FILE.toPath());
+            } catch (IOException | UnsupportedOperationException excp) {
+                Files.copy(PACK_FILE.toPath(), packOld.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        try {
+            Files.move(packTemp.toPath(), PACK_FILE.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.move(indexTemp.toPath(), INDEX_FILE.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            if (saved) {
+                Files.move(packOld.toPath(), PACK_FILE.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            packTemp.delete();
+            indexTemp.delete();
+            throw excp;
+        }
+        packOld.delete();
+    }
+
+    /**
+     * Write to OUT the lengths of HEAD followed by what remains of REST, if
+     * it is not null, then both deflated. The data is deflated straight
+     * into OUT through a bounded buffer, and the lengths filled in after.
+     */
+    private static void writeData(RandomAccessFile out, byte[] head,
+                                  InputStream rest) throws IOException {
+        long lengths = out.getFilePointer();
+        out.writeInt(0);
+        out.writeInt(0);
+        long start = out.getFilePointer();
+        long length = head.length;
+        OutputStream file = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+        };
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(
+                new BufferedOutputStream(file, Utils.BUFFER_SIZE))) {
+            deflater.write(head);
+            if (rest != null) {
+                byte[] buffer = new byte[Utils.BUFFER_SIZE];
+                for (int n = rest.read(buffer); n >= 0;
+                     n = rest.read(buffer)) {
+                    deflater.write(buffer, 0, n);
+                    length += n;
+                }
+            }
+        }
+        long end = out.getFilePointer();
+        if (length > Integer.MAX_VALUE || end - start > Integer.MAX_VALUE) {
+            throw new IOException("object too large to pack");
+        }
+        out.seek(lengths);
+        out.writeInt((int) length);
+        out.writeInt((int) (end - start));
+        out.seek(end);
+    }
+
+    /** The index of this pack. */
+    private PackIndex _index;
+
+    /** The pack, mapped into memory. */
+    private final MappedByteBuffer _map;
+
+}
@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The index of a packfile, read through a memory map. The file holds a
+ * 256-entry fan-out table, where entry B counts the ids whose first byte is
+ * at most B, then all object ids in sorted order, then the pack offset of
+ * each id. Finding an object is a binary search over the ids sharing its
+ * first byte, done directly on the mapped bytes.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class PackIndex {
+
+    /** Magic number at the start of a pack index. */
+    private static final int MAGIC = 0x47494458;
+
+    /** Version of the index format. */
+    private static final int VERSION = 1;
+
+    /** Length in bytes of an id. */
+    private static final int ID_BYTES = ObjectId.LENGTH;
+
+    /** Offset of the fan-out table. */
+    private static final int FANOUT = 8;
+
+    /** Offset of the sorted ids. */
+    private static final int IDS = FANOUT + 256 * 4;
+
+    /** Map the index FILE. */
+    PackIndex(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (_map.getInt(0) != MAGIC || _map.getInt(4) != VERSION) {
+            throw new IOException("bad pack index " + file);
+        }
+        _size = _map.getInt(FANOUT + 255 * 4);
+        _offsets = IDS + _size * ID_BYTES;
+    }
+
+    /** Return the number of objects in the pack. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the id of the Ith object, in sorted order. */
+    ObjectId idAt(int i) {
+        byte[] id = new byte[ID_BYTES];
+        _map.get(IDS + i * ID_BYTES, id);
+        return ObjectId.fromRaw(id);
+    }
+
+    /**
+     * Return the pack offset of the object ID, or -1 if it is not in the
+     * pack.
+     */
+    long find(ObjectId id) {
+        int first = id.byteAt(0);
+        int lo = first == 0 ? 0 : _map.getInt(FANOUT + (first - 1) * 4);
+        int hi = _map.getInt(FANOUT + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, id);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return _map.getLong(_offsets + mid * 8);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare the Ith id with KEY as unsigned bytes, returning a negative,
+     * zero or positive value as it is less, equal or greater.
+     */
+    private int compare(int i, ObjectId key) {
+        int base = IDS + i * ID_BYTES;
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            int diff = (_map.get(base + k) & 0xff) - key.byteAt(k);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Write an index to FILE for OFFSETS, which maps object ids, in order,
+     * to their pack offsets.
+     */
+    static void write(File file, SortedMap<ObjectId, Long> offsets)
+        throws IOException {
+        int[] fanout = new int[256];
+        for (ObjectId id : offsets.keySet()) {
+            fanout[id.byteAt(0)] += 1;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int total = 0;
+            for (int count : fanout) {
+                total += count;
+                out.writeInt(total);
+            }
+            for (ObjectId id : offsets.keySet()) {
+                id.write(out);
+            }
+            for (Map.Entry<ObjectId, Long> entry : offsets.entrySet()) {
+                out.writeLong(entry.getValue());
+            }
+        }
+    }
+
+    /** The mapped index file. */
+    private MappedByteBuffer _map;
+
+    /** Number of objects in the pack. */
+    private int _size;
+
+    /** Position of the table of pack offsets. */
+    private int _offsets;
+
+}
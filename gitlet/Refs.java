@@ -0,0 +1,98 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Branches, each kept as a small file .gitlet/refs/NAME holding the id of
+ * the commit at its head, so that reading or moving one branch touches
+ * nothing else. NAME is the branch's name percent-encoded into a single
+ * file name: every byte of its UTF-8 form other than a letter, digit, '-',
+ * '_' or a '.' that does not begin it is written %XX, so that names such as
+ * "feature/x" or "../x" never reach outside the directory.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Refs {
+
+    /** The directory holding one file per branch. */
+    static final File REFS = new File(".gitlet/refs");
+
+    /** Return true if BRANCH exists. */
+    static boolean exists(String branch) {
+        return file(branch).isFile();
+    }
+
+    /** Return the head commit of BRANCH, or null if there is no BRANCH. */
+    static Commit get(String branch) {
+        File file = file(branch);
+        if (!file.isFile()) {
+            return null;
+        }
+        return Commit.read(ObjectId.fromHex(new String(
+                Utils.readContents(file), StandardCharsets.UTF_8).trim()));
+    }
+
+    /** Make COMMIT the head of BRANCH, creating BRANCH if needed. */
+    static void put(String branch, Commit commit) {
+        REFS.mkdirs();
+        Utils.writeContents(file(branch),
+                (commit.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Delete BRANCH. */
+    static void remove(String branch) {
+        file(branch).delete();
+    }
+
+    /** Return the names of all branches, in sorted order. */
+    static List<String> branches() {
+        List<String> result = new ArrayList<String>();
+        for (String name : Utils.plainFilenamesIn(REFS)) {
+            result.add(decode(name));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the file of BRANCH, which is not empty. */
+    private static File file(String branch) {
+        return new File(REFS, encode(branch));
+    }
+
+    /** Return BRANCH percent-encoded into a file name. */
+    static String encode(String branch) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : branch.getBytes(StandardCharsets.UTF_8)) {
+            if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z'
+                    || b >= '0' && b <= '9' || b == '-' || b == '_'
+                    || b == '.' && result.length() > 0) {
+                result.append((char) b);
+            } else {
+                result.append(String.format("%%%02X", b & 0xff));
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the branch name whose file is NAME. */
+    static String decode(String name) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = 0; i < name.length(); i += 1) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 2 < name.length()) {
+                result.write(Integer.parseInt(name.substring(i + 1, i + 3),
+                        16));
+                i += 2;
+            } else {
+                result.write(c);
+            }
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
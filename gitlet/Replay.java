@@ -0,0 +1,267 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An end-to-end latency harness, which replays scripts in the format of
+ * the autograder's .in files (such as those written by
+ * testing/workload.py) through the real command line, starting a JVM for
+ * every command as a user would, and reports for each command its
+ * latency percentiles and, as the script goes on, the size of .gitlet.
+ *
+ * Usage: java gitlet.Replay [--src DIR] [--progdir DIR] [--sample N]
+ * [--keep] SCRIPT.in ... Each script runs in a new temporary directory,
+ * copying files from DIR (default "src") for its "+" lines. Every N
+ * commands (default 100), the size of .gitlet is sampled along with the
+ * median latency of the commands since the last sample. Outputs are
+ * compared with those the script expects, where they are given exactly,
+ * and the mismatches counted. The gitlet classes are taken from the
+ * class path, or from --progdir.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Replay {
+
+    /** Run the scripts given in ARGS. */
+    public static void main(String... args) throws IOException {
+        File src = new File("src");
+        String progDir = null;
+        int sample = 100;
+        boolean keep = false;
+        List<String> scripts = new ArrayList<String>();
+        for (int i = 0; i < args.length; i += 1) {
+            if (args[i].equals("--src") && i + 1 < args.length) {
+                src = new File(args[i += 1]);
+            } else if (args[i].equals("--progdir") && i + 1 < args.length) {
+                progDir = args[i += 1];
+            } else if (args[i].equals("--sample") && i + 1 < args.length) {
+                sample = Integer.parseInt(args[i += 1]);
+            } else if (args[i].equals("--keep")) {
+                keep = true;
+            } else {
+                scripts.add(args[i]);
+            }
+        }
+        if (scripts.isEmpty() || sample <= 0) {
+            System.out.println("Usage: java gitlet.Replay [--src DIR]"
+                    + " [--progdir DIR] [--sample N] [--keep] SCRIPT.in ...");
+            return;
+        }
+        String classPath = progDir != null ? new File(progDir)
+            .getAbsolutePath() : Arrays.stream(System.getProperty(
+                "java.class.path").split(File.pathSeparator))
+            .map(entry -> new File(entry).getAbsolutePath())
+            .collect(Collectors.joining(File.pathSeparator));
+        for (String script : scripts) {
+            new Replay(new File(script), src.getAbsoluteFile(), classPath,
+                    sample).run(keep);
+        }
+    }
+
+    /**
+     * A replay of SCRIPT, copying files from SRC, running gitlet from
+     * CLASSPATH, and sampling every SAMPLE commands.
+     */
+    Replay(File script, File src, String classPath, int sample) {
+        _script = script;
+        _src = src;
+        _classPath = classPath;
+        _sample = sample;
+    }
+
+    /** Replay the script, then print what was measured. Unless KEEP, the
+     *  directory it ran in is deleted afterwards. */
+    void run(boolean keep) throws IOException {
+        _dir = Files.createTempDirectory("gitlet-replay").toFile();
+        System.out.println(_script + " (in " + _dir + "):");
+        try (BufferedReader in = new BufferedReader(
+                new FileReader(_script))) {
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith(">")) {
+                    List<String> expected = new ArrayList<String>();
+                    String end = in.readLine();
+                    while (end != null && !end.startsWith("<<<")) {
+                        expected.add(end);
+                        end = in.readLine();
+                    }
+                    boolean exact = end != null && !end.startsWith("<<<*");
+                    execute(trimmed.substring(1).trim(), exact
+                            ? expected : null);
+                } else if (trimmed.startsWith("+")) {
+                    String[] words = trimmed.substring(1).trim().split("\\s+");
+                    Files.copy(new File(_src, words[1]).toPath(),
+                            new File(_dir, words[0]).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                } else if (trimmed.startsWith("-")) {
+                    new File(_dir, trimmed.substring(1).trim()).delete();
+                }
+            }
+        } finally {
+            if (!keep) {
+                delete(_dir.toPath());
+            }
+        }
+        report();
+    }
+
+    /**
+     * Run the gitlet command LINE, timing it, and count a mismatch if
+     * EXPECTED is not null and differs from its output.
+     */
+    private void execute(String line, List<String> expected)
+        throws IOException {
+        String[] args = Batch.split(line);
+        if (args == null || args.length == 0) {
+            return;
+        }
+        List<String> command = new ArrayList<String>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/java")
+                    .getPath(), "-cp", _classPath, "gitlet.Main"));
+        command.addAll(Arrays.asList(args));
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(_dir)
+            .redirectErrorStream(true).start();
+        String output;
+        try (InputStream out = process.getInputStream()) {
+            output = new String(out.readAllBytes());
+            process.waitFor();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        _latencies.computeIfAbsent(args[0], k -> new ArrayList<Long>())
+            .add(latency);
+        _window.add(latency);
+        if (expected != null && !sameOutput(expected, output)) {
+            _mismatches += 1;
+        }
+        _commands += 1;
+        if (_commands % _sample == 0) {
+            Collections.sort(_window);
+            _growth.add(new long[] { _commands, size(new File(_dir,
+                    ".gitlet").toPath()), percentile(_window, 50) });
+            _window.clear();
+        }
+    }
+
+    /**
+     * Return true if OUTPUT is EXPECTED, ignoring white space at the ends
+     * of lines and blank lines at the end.
+     */
+    private static boolean sameOutput(List<String> expected, String output) {
+        List<String> actual = new ArrayList<String>();
+        for (String line : output.split("\r?\n")) {
+            actual.add(line.trim());
+        }
+        List<String> wanted = new ArrayList<String>();
+        for (String line : expected) {
+            wanted.add(line.trim());
+        }
+        for (List<String> lines : Arrays.asList(actual, wanted)) {
+            while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+                lines.remove(lines.size() - 1);
+            }
+        }
+        return actual.equals(wanted);
+    }
+
+    /** Print the latencies of each command and the growth of .gitlet. */
+    private void report() {
+        System.out.printf("%-12s %8s %10s %10s %10s %10s%n", "command",
+                "count", "p50 ms", "p99 ms", "max ms", "mean ms");
+        for (Map.Entry<String, List<Long>> e : _latencies.entrySet()) {
+            List<Long> times = e.getValue();
+            Collections.sort(times);
+            double mean = times.stream().mapToLong(t -> t).average()
+                .orElse(0);
+            System.out.printf("%-12s %8d %10.1f %10.1f %10.1f %10.1f%n",
+                    e.getKey(), times.size(), percentile(times, 50) / 1e6,
+                    percentile(times, 99) / 1e6,
+                    times.get(times.size() - 1) / 1e6, mean / 1e6);
+        }
+        System.out.printf("%n%10s %14s %10s%n", "commands", ".gitlet bytes",
+                "p50 ms");
+        for (long[] row : _growth) {
+            System.out.printf("%10d %14d %10.1f%n", row[0], row[1],
+                    row[2] / 1e6);
+        }
+        System.out.println("\n" + _mismatches + " of " + _commands
+                + " outputs differed from those expected.\n");
+    }
+
+    /** Return the Pth percentile of SORTED, which is not empty. */
+    private static long percentile(List<Long> sorted, int p) {
+        int k = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(k, sorted.size() - 1)));
+    }
+
+    /** Return the total size of the files under DIR. */
+    private static long size(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile)
+                .mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    /** Delete DIR and everything under it. */
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** The script replayed. */
+    private final File _script;
+
+    /** The directory holding the files the script copies in. */
+    private final File _src;
+
+    /** The class path of the gitlet that is run. */
+    private final String _classPath;
+
+    /** Commands between samples of the size of .gitlet. */
+    private final int _sample;
+
+    /** The directory the script runs in. */
+    private File _dir;
+
+    /** Latencies, in nanoseconds, of each command by name. */
+    private TreeMap<String, List<Long>> _latencies =
+        new TreeMap<String, List<Long>>();
+
+    /** Latencies of the commands run since the last sample. */
+    private List<Long> _window = new ArrayList<Long>();
+
+    /** Samples: commands run, bytes in .gitlet and median latency. */
+    private List<long[]> _growth = new ArrayList<long[]>();
+
+    /** Commands run so far. */
+    private int _commands;
+
+    /** Commands whose output differed from what was expected. */
+    private int _mismatches;
+
+}
@@ -0,0 +1,218 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The gitlet server, which keeps one repository open in a long-running JVM
+ * so that commands pay neither JVM startup nor the reading of the
+ * repository. "gitlet serve" listens on the Unix-domain socket
+ * .gitlet/gitlet.sock; while it runs, every other gitlet command given in
+ * that directory is sent to it instead of being run locally, and its
+ * output is copied back. The server runs one command at a time against
+ * the same Gitlet system, writing the system back to disk after each
+ * command that may change it, and stops on "gitlet serve --stop".
+ *
+ * A request is the number of arguments as an int followed by each as an
+ * int length and that many bytes of UTF-8; the reply is the command's
+ * output, after which the server closes the connection. A request of more
+ * than MAX_ARGS arguments, or with an argument of more than MAX_ARG_BYTES
+ * bytes, is answered with an error, as is one whose command fails
+ * unexpectedly; the server carries on with the next connection.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Server {
+
+    /** The socket the server listens on. */
+    static final File SOCKET = new File(".gitlet/gitlet.sock");
+
+    /** Most arguments a request may have. */
+    static final int MAX_ARGS = 1024;
+
+    /** Longest argument a request may have, in bytes. */
+    static final int MAX_ARG_BYTES = 1 << 20;
+
+    /** The request that stops the server. */
+    private static final String[] STOP = { "serve", "--stop" };
+
+    /** Commands that never change the repository. */
+    private static final Set<String> READ_ONLY = new HashSet<String>(
+            Arrays.asList("log", "global-log", "find", "status", "rev-list",
+                    "diff"));
+
+    /**
+     * Send ARGS to the server, if one is running, and copy its reply to
+     * the standard output. Return false if there is no server to send to.
+     */
+    static boolean forward(String[] args) {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return false;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                    Channels.newOutputStream(channel));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            channel.shutdownOutput();
+            Channels.newInputStream(channel).transferTo(System.out);
+            System.out.flush();
+        } catch (IOException excp) {
+            System.out.println("Lost the connection to the server.");
+        }
+        return true;
+    }
+
+    /** Return true if a server is running here. */
+    static boolean isRunning() {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            return true;
+        }
+        return true;
+    }
+
+    /**
+     * Return a connection to the server, or null if no server is running.
+     */
+    private static SocketChannel connect() {
+        if (!SOCKET.exists()) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(
+                    UnixDomainSocketAddress.of(SOCKET.toPath()));
+        } catch (IOException | UnsupportedOperationException excp) {
+            return null;
+        }
+    }
+
+    /** Serve commands on SOCKET until told to stop. */
+    static void serve() {
+        SOCKET.delete();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET.toPath()));
+            Thread cleanup = new Thread(SOCKET::delete);
+            Runtime.getRuntime().addShutdownHook(cleanup);
+            System.out.println("Serving on " + SOCKET + ".");
+            Gitlet git = Gitlet.reconstruct();
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    ByteArrayOutputStream reply = new ByteArrayOutputStream();
+                    try {
+                        String[] args = readRequest(client);
+                        running = !Arrays.equals(Stats.command(args), STOP);
+                        git = run(args, git, reply);
+                    } catch (RuntimeException excp) {
+                        String error = excp.getMessage() == null
+                            ? excp.toString() : excp.getMessage();
+                        reply.reset();
+                        reply.write((error + "\n").getBytes(
+                                StandardCharsets.UTF_8));
+                    }
+                    Channels.newOutputStream(client).write(
+                            reply.toByteArray());
+                } catch (IOException excp) {
+                    continue;
+                }
+            }
+            git.serialize();
+            Runtime.getRuntime().removeShutdownHook(cleanup);
+        } catch (IOException | UnsupportedOperationException excp) {
+            System.out.println("Cannot serve on " + SOCKET + ": "
+                    + excp.getMessage());
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /**
+     * Return the arguments of the request read from CLIENT. Throws
+     * IllegalArgumentException if it has more than MAX_ARGS arguments or
+     * one longer than MAX_ARG_BYTES.
+     */
+    private static String[] readRequest(SocketChannel client)
+        throws IOException {
+        DataInputStream in = new DataInputStream(
+                Channels.newInputStream(client));
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ARGS) {
+            throw new IllegalArgumentException("Malformed request.");
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < args.length; i += 1) {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_ARG_BYTES) {
+                throw new IllegalArgumentException("Malformed request.");
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            args[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return args;
+    }
+
+    /**
+     * Run ARGS against GIT, with the standard output going to REPLY, and
+     * return the system to use for the next command: GIT, or GIT read
+     * again from disk if the command failed part way. If ARGS begin with
+     * --stats, the statistics of the command follow its output.
+     */
+    private static Gitlet run(String[] args, Gitlet git,
+                              ByteArrayOutputStream reply) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(reply, true, StandardCharsets.UTF_8));
+        String[] command = Stats.command(args);
+        Stats.enable(command.length < args.length);
+        args = command;
+        Stats.Command event = new Stats.Command(args);
+        try {
+            if (Arrays.equals(args, STOP)) {
+                System.out.println("Server stopped.");
+            } else if (args.length > 0 && args[0].equals("serve")) {
+                System.out.println("A server is already running.");
+            } else {
+                Gitlet.interpret(args, git);
+                if (args.length == 0 || !READ_ONLY.contains(args[0])) {
+                    git.serialize();
+                }
+            }
+            return git;
+        } catch (RuntimeException excp) {
+            System.out.println(excp.getMessage());
+            return Gitlet.reconstruct();
+        } finally {
+            event.finish();
+            Stats.report(System.out);
+            System.out.flush();
+            System.setOut(stdout);
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Instrumentation of a gitlet command: the number of calls, the time spent
+ * and the bytes (or, for directory scans, the entries) handled by each kind
+ * of operation, such as loading and saving the repository, reading and
+ * writing files, hashing and scanning directories. Counts are kept only
+ * once enable() is called, as "gitlet --stats COMMAND ..." does before
+ * printing them after the command's output. Independently, every operation
+ * is a JDK Flight Recorder event, gitlet.Operation, and every command a
+ * gitlet.Command event, recorded whenever a recording enables them, as
+ * with java -XX:StartFlightRecording.
+ *
+ * Counters are updated from whatever thread does the work, so parallel
+ * hashing and checkout are counted in full, and their times summed.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Stats {
+
+    /** The flag that asks for statistics. */
+    static final String FLAG = "--stats";
+
+    /** An operation in progress, timed from its creation. */
+    @Name("gitlet.Operation")
+    @Label("Gitlet Operation")
+    @Category("Gitlet")
+    @Description("An operation done by a gitlet command")
+    static final class Timer extends Event {
+        /** Start timing the operation NAME. */
+        Timer(String name) {
+            this.name = name;
+            _start = System.nanoTime();
+            begin();
+        }
+
+        /** Stop timing, recording AMOUNT bytes or entries handled. */
+        void stop(long amount) {
+            end();
+            if (_enabled) {
+                record(name, System.nanoTime() - _start, amount);
+            }
+            if (shouldCommit()) {
+                this.amount = amount;
+                commit();
+            }
+        }
+
+        /** The kind of operation. */
+        @Label("Operation")
+        String name;
+
+        /** Bytes or entries handled. */
+        @Label("Amount")
+        @Description("Bytes handled, or entries for directory scans")
+        long amount;
+
+        /** When the operation started, from System.nanoTime. */
+        private final transient long _start;
+    }
+
+    /** A whole command, timed from its creation. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    @Description("A gitlet command")
+    static final class Command extends Event {
+        /** Start timing the command whose arguments are ARGS. */
+        Command(String[] args) {
+            command = args.length == 0 ? "" : args[0];
+            arguments = String.join(" ", args);
+            _start = System.nanoTime();
+            begin();
+        }
+
+        /** Stop timing the command, counting it as the operation
+         *  "command.NAME", for the command's NAME. */
+        void finish() {
+            end();
+            if (_enabled) {
+                record("command." + command, System.nanoTime() - _start, 0);
+            }
+            if (shouldCommit()) {
+                commit();
+            }
+        }
+
+        /** The command's name. */
+        @Label("Command")
+        String command;
+
+        /** All of its arguments. */
+        @Label("Arguments")
+        String arguments;
+
+        /** When the command started, from System.nanoTime. */
+        private final transient long _start;
+    }
+
+    /** Return a timer started for the operation NAME. */
+    static Timer start(String name) {
+        return new Timer(name);
+    }
+
+    /** Record a call of the untimed operation NAME handling AMOUNT. */
+    static void count(String name, long amount) {
+        if (_enabled) {
+            record(name, 0, amount);
+        }
+    }
+
+    /** Add a call taking NANOS and handling AMOUNT to the totals of NAME. */
+    private static void record(String name, long nanos, long amount) {
+        LongAdder[] totals = TOTALS.computeIfAbsent(name, k ->
+                new LongAdder[] { new LongAdder(), new LongAdder(),
+                                  new LongAdder() });
+        totals[0].increment();
+        totals[1].add(nanos);
+        totals[2].add(amount);
+    }
+
+    /**
+     * Start keeping counts afresh, as for a new command, if ENABLED, or
+     * stop keeping them.
+     */
+    static void enable(boolean enabled) {
+        TOTALS.clear();
+        _cacheHits = Commit.CACHE.hits();
+        _cacheMisses = Commit.CACHE.misses();
+        _enabled = enabled;
+    }
+
+    /** Return ARGS without the FLAG that may begin them. */
+    static String[] command(String[] args) {
+        if (args.length == 0 || !args[0].equals(FLAG)) {
+            return args;
+        }
+        return Arrays.copyOfRange(args, 1, args.length);
+    }
+
+    /**
+     * Return the calls, nanoseconds and amount counted for NAME so far, all
+     * zero if there were none.
+     */
+    static long[] totals(String name) {
+        LongAdder[] totals = TOTALS.get(name);
+        if (totals == null) {
+            return new long[3];
+        }
+        return new long[] { totals[0].sum(), totals[1].sum(),
+                            totals[2].sum() };
+    }
+
+    /** Print the counts kept so far to OUT, then stop keeping them. */
+    static void report(PrintStream out) {
+        if (!_enabled) {
+            return;
+        }
+        out.println("=== Statistics ===");
+        out.printf("%-18s %8s %10s %12s%n", "operation", "calls", "ms",
+                "amount");
+        for (Map.Entry<String, LongAdder[]> e : TOTALS.entrySet()) {
+            LongAdder[] totals = e.getValue();
+            out.printf("%-18s %8d %10.2f %12d%n", e.getKey(),
+                    totals[0].sum(), totals[1].sum() / 1e6, totals[2].sum());
+        }
+        out.printf("commit cache: %d hits, %d misses%n",
+                Commit.CACHE.hits() - _cacheHits,
+                Commit.CACHE.misses() - _cacheMisses);
+        out.flush();
+        enable(false);
+    }
+
+    /** Calls, nanoseconds and amount of each operation, by name. */
+    private static final ConcurrentSkipListMap<String, LongAdder[]> TOTALS =
+        new ConcurrentSkipListMap<String, LongAdder[]>();
+
+    /** True while counts are being kept. */
+    private static volatile boolean _enabled;
+
+    /** Commit cache hits and misses when counting started. */
+    private static long _cacheHits, _cacheMisses;
+
+}
@@ -0,0 +1,209 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tree objects, which record the contents of one directory: a sorted list
+ * of names, each the id of a blob (a file) or of another tree (a
+ * subdirectory). Trees are kept in the ObjectStore beside the blobs, and a
+ * commit refers to the tree of the top directory. Since a tree's id is the
+ * hash of its contents, a directory that did not change between two
+ * commits has the same id in both, and comparing them need not look inside
+ * it. Paths are relative to the top directory and use '/' as separator.
+ *
+ * @author Kevin Vo and Christian Lista-Nicoloso
+ */
+class Tree {
+
+    /** Types of tree entries. */
+    static final int BLOB = 1, TREE = 2;
+
+    /** One entry of a tree. */
+    private static class Entry {
+        /** An entry of type TYPE for object ID. */
+        Entry(int type, ObjectId id) {
+            _type = type;
+            _id = id;
+        }
+        /** BLOB or TREE. */
+        private final int _type;
+        /** The blob or tree. */
+        private final ObjectId _id;
+    }
+
+    /**
+     * Return NAME, a path as given on the command line, in normal form:
+     * relative to the working directory, without "." or ".." components
+     * or repeated separators, and separated by '/'. Return null if NAME
+     * names the working directory itself, lies outside it, or lies in
+     * .gitlet.
+     */
+    static String normalize(String name) {
+        Path root = Paths.get("").toAbsolutePath();
+        Path path;
+        try {
+            path = root.resolve(name).normalize();
+        } catch (InvalidPathException excp) {
+            return null;
+        }
+        if (!path.startsWith(root) || path.equals(root)) {
+            return null;
+        }
+        Path relative = root.relativize(path);
+        if (relative.getName(0).toString().equals(".gitlet")) {
+            return null;
+        }
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Store the trees of FILES, which maps paths to blob ids, and return the
+     * id of the top tree.
+     */
+    static ObjectId write(Map<String, ObjectId> files) {
+        return writeTree(new TreeMap<String, ObjectId>(files));
+    }
+
+    /** Return the paths of all files under TREE, mapped to their blob ids. */
+    static HashMap<String, ObjectId> flatten(ObjectId tree) {
+        HashMap<String, ObjectId> result = new HashMap<String, ObjectId>();
+        flatten(tree, "", result);
+        return result;
+    }
+
+    /**
+     * Return the paths whose blobs differ between trees A and B, each mapped
+     * to its blob ids in A and in B, either of which is null if the path is
+     * absent there. Subtrees with equal ids in A and B are not read. A or B
+     * may be null, standing for an empty tree.
+     */
+    static TreeMap<String, ObjectId[]> diff(ObjectId a, ObjectId b) {
+        TreeMap<String, ObjectId[]> result = new TreeMap<String, ObjectId[]>();
+        diff(a, b, "", result);
+        return result;
+    }
+
+    /** Add to IDS the id of TREE and of every tree below it. */
+    static void collectTrees(ObjectId tree, Set<ObjectId> ids) {
+        if (!ids.add(tree)) {
+            return;
+        }
+        for (Entry entry : read(tree).values()) {
+            if (entry._type == TREE) {
+                collectTrees(entry._id, ids);
+            }
+        }
+    }
+
+    /** Store the trees of FILES and return the id of the top one. */
+    private static ObjectId writeTree(SortedMap<String, ObjectId> files) {
+        TreeMap<String, Entry> entries = new TreeMap<String, Entry>();
+        TreeMap<String, TreeMap<String, ObjectId>> dirs =
+            new TreeMap<String, TreeMap<String, ObjectId>>();
+        for (Map.Entry<String, ObjectId> e : files.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                entries.put(path, new Entry(BLOB, e.getValue()));
+            } else {
+                dirs.computeIfAbsent(path.substring(0, slash),
+                    k -> new TreeMap<String, ObjectId>())
+                    .put(path.substring(slash + 1), e.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, ObjectId>> e
+                 : dirs.entrySet()) {
+            entries.put(e.getKey(), new Entry(TREE, writeTree(e.getValue())));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                out.writeByte(e.getValue()._type);
+                out.writeUTF(e.getKey());
+                e.getValue()._id.write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return ObjectStore.put(bytes.toByteArray());
+    }
+
+    /** Return the entries of TREE by name, or none if TREE is null. */
+    private static TreeMap<String, Entry> read(ObjectId tree) {
+        TreeMap<String, Entry> result = new TreeMap<String, Entry>();
+        if (tree == null) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(ObjectStore.read(tree)))) {
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                int type = in.readByte();
+                String name = in.readUTF();
+                result.put(name, new Entry(type, ObjectId.read(in)));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Add the files under TREE to RESULT, with PREFIX before their paths. */
+    private static void flatten(ObjectId tree, String prefix,
+                                Map<String, ObjectId> result) {
+        for (Map.Entry<String, Entry> e : read(tree).entrySet()) {
+            Entry entry = e.getValue();
+            if (entry._type == TREE) {
+                flatten(entry._id, prefix + e.getKey() + "/", result);
+            } else {
+                result.put(prefix + e.getKey(), entry._id);
+            }
+        }
+    }
+
+    /**
+     * Add to RESULT the files that differ between trees A and B, with
+     * PREFIX before their paths.
+     */
+    private static void diff(ObjectId a, ObjectId b, String prefix,
+                             TreeMap<String, ObjectId[]> result) {
+        if (a != null && a.equals(b)) {
+            return;
+        }
+        TreeMap<String, Entry> entriesA = read(a), entriesB = read(b);
+        TreeMap<String, Entry> all = new TreeMap<String, Entry>(entriesA);
+        all.putAll(entriesB);
+        for (String name : all.keySet()) {
+            Entry x = entriesA.get(name), y = entriesB.get(name);
+            String path = prefix + name;
+            if (x != null && y != null && x._type == y._type
+                    && x._id.equals(y._id)) {
+                continue;
+            }
+            ObjectId treeA = x != null && x._type == TREE ? x._id : null;
+            ObjectId treeB = y != null && y._type == TREE ? y._id : null;
+            if (treeA != null || treeB != null) {
+                diff(treeA, treeB, path + "/", result);
+            }
+            ObjectId blobA = x != null && x._type == BLOB ? x._id : null;
+            ObjectId blobB = y != null && y._type == BLOB ? y._id : null;
+            if (blobA != null || blobB != null) {
+                result.put(path, new ObjectId[] { blobA, blobB });
+            }
+        }
+    }
+
+}
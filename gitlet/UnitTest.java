@@ -4,6 +4,25 @@ import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
 /**
  * The suite of all JUnit tests for the gitlet package.
  *
@@ -25,4 +44,332 @@ public class UnitTest {
 
     }
 
+    /** Streaming a file through sha1 matches hashing its contents. */
+    @Test
+    public void sha1FileTest() throws IOException {
+        byte[] contents = new byte[3 * Utils.HASH_BUFFER_SIZE + 17];
+        for (int i = 0; i < contents.length; i += 1) {
+            contents[i] = (byte) (i * 31);
+        }
+        File file = File.createTempFile("hash", ".bin");
+        try {
+            Utils.writeContents(file, contents);
+            assertEquals(Utils.sha1Id(contents), Utils.sha1(file));
+            Utils.writeContents(file, new byte[0]);
+            assertEquals(Utils.sha1Id(new byte[0]), Utils.sha1(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Object ids convert to and from hex and compare as raw bytes. */
+    @Test
+    public void objectIdTest() {
+        String hex = Utils.sha1("gitlet");
+        ObjectId id = ObjectId.fromHex(hex);
+        assertEquals(hex, id.toString());
+        assertEquals(id, Utils.sha1Id("gitlet"));
+        assertEquals(id.hashCode(), ObjectId.fromHex(hex).hashCode());
+        assertTrue(id.startsWith(hex.substring(0, 7)));
+        assertFalse(id.startsWith(hex.substring(0, 6) + "x"));
+        byte[] raw = new byte[ObjectId.LENGTH];
+        id.copyRawTo(raw, 0);
+        assertEquals(id, ObjectId.fromRaw(raw));
+        ObjectId low = ObjectId.fromHex("7f" + hex.substring(2));
+        ObjectId high = ObjectId.fromHex("80" + hex.substring(2));
+        assertTrue(low.compareTo(high) < 0);
+        assertTrue(high.comparePrefix("80") == 0);
+    }
+
+    /** Lookups in a pack index find every id and nothing else. */
+    @Test
+    public void packIndexTest() throws IOException {
+        TreeMap<ObjectId, Long> offsets = new TreeMap<ObjectId, Long>();
+        for (int i = 0; i < 500; i += 1) {
+            offsets.put(Utils.sha1Id("object" + i), (long) i * 100);
+        }
+        File file = File.createTempFile("pack", ".idx");
+        try {
+            PackIndex.write(file, offsets);
+            PackIndex index = new PackIndex(file);
+            assertEquals(500, index.size());
+            for (ObjectId id : offsets.keySet()) {
+                assertEquals((long) offsets.get(id), index.find(id));
+            }
+            assertEquals(offsets.firstKey(), index.idAt(0));
+            assertEquals(-1, index.find(Utils.sha1Id("missing")));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Deltas turn their base into their target, whatever the edit. */
+    @Test
+    public void deltaTest() {
+        byte[] text = bytes(5000, 1);
+        byte[] edited = text.clone();
+        edited[2500] ^= 1;
+        byte[][][] cases = {
+            { new byte[0], new byte[0] }, { new byte[0], text },
+            { text, new byte[0] }, { text, text }, { text, edited },
+            { text, Arrays.copyOfRange(text, 100, 5000) },
+            { text, Arrays.copyOf(text, 4900) },
+            { text, concat("prefix".getBytes(), text) },
+            { text, concat(text, "suffix".getBytes()) },
+            { text, bytes(3000, 2) },
+        };
+        for (byte[][] c : cases) {
+            assertArrayEquals(c[1], Delta.apply(c[0],
+                    Delta.create(c[0], c[1])));
+        }
+        assertTrue(Delta.create(text, edited).length < 200);
+        assertTrue(Delta.create(text, text).length < 20);
+    }
+
+    /** Deltas that do not fit their base, or are malformed, are refused. */
+    @Test
+    public void deltaCorruptTest() {
+        byte[] base = "abc".getBytes();
+        byte[][] corrupt = {
+            { 3, 1, 7 },
+            { 3, 5, 0, 1, 5 },
+            { 3, 5, 1, 1, 'x' },
+            { 3, 5, 1, 5, 'x' },
+            { 4, 1, 1, 1, 'x' },
+        };
+        for (byte[] delta : corrupt) {
+            try {
+                Delta.apply(base, delta);
+                fail("accepted a corrupt delta");
+            } catch (IllegalArgumentException excp) {
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Packed objects read back as they were written, delta chains stay
+     * within MAX_DEPTH, and objects above STREAM_MIN are streamed.
+     */
+    @Test
+    public void packTest() throws IOException {
+        clearRepository();
+        run("init");
+        File small = new File("delta.txt"), big = new File("big.txt");
+        HashMap<ObjectId, byte[]> contents = new HashMap<ObjectId, byte[]>();
+        byte[] text = bytes(4000, 3);
+        for (int i = 0; i < 3 * Pack.MAX_DEPTH; i += 1) {
+            text[i * 100] = '#';
+            Utils.writeContents(small, text);
+            run("add", "delta.txt");
+            if (i == 0) {
+                Utils.writeContents(big, bytes(3 * Pack.STREAM_MIN / 2, 4));
+                run("add", "big.txt");
+            }
+            run("commit", "version " + i);
+            contents.put(Utils.sha1Id(text), text.clone());
+        }
+        ObjectId bigId = Utils.sha1(big);
+        contents.put(bigId, Utils.readContents(big));
+        run("gc");
+        assertTrue(Pack.INDEX_FILE.isFile());
+        for (ObjectId id : contents.keySet()) {
+            assertTrue(!ObjectStore.isLoose(id));
+            assertArrayEquals(contents.get(id), ObjectStore.read(id));
+        }
+        try (InputStream in = ObjectStore.open(bigId)) {
+            assertTrue(!(in instanceof ByteArrayInputStream));
+            assertArrayEquals(contents.get(bigId), in.readAllBytes());
+        }
+        PackIndex index = new PackIndex(Pack.INDEX_FILE);
+        int deepest = 0;
+        try (RandomAccessFile pack = new RandomAccessFile(Pack.PACK_FILE,
+                "r")) {
+            for (ObjectId id : contents.keySet()) {
+                int depth = 0;
+                pack.seek(index.find(id));
+                while (pack.readByte() == Pack.DELTA) {
+                    pack.seek(pack.readLong());
+                    depth += 1;
+                }
+                deepest = Math.max(deepest, depth);
+            }
+        }
+        assertEquals(Pack.MAX_DEPTH, deepest);
+        small.delete();
+        big.delete();
+        clearRepository();
+    }
+
+    /**
+     * The commit cache evicts the least recently used commit, and counts
+     * its hits and misses exactly.
+     */
+    @Test
+    public void commitCacheTest() {
+        clearRepository();
+        run("init");
+        ObjectId[] ids = new ObjectId[3];
+        ids[0] = Gitlet.reconstruct().getHead().getValue();
+        for (int i = 1; i < ids.length; i += 1) {
+            Utils.writeContents(new File("cache.txt"), bytes(10, i));
+            run("add", "cache.txt");
+            run("commit", "commit " + i);
+            ids[i] = Gitlet.reconstruct().getHead().getValue();
+        }
+        CommitCache cache = new CommitCache(2);
+        assertEquals(ids[0], cache.get(ids[0]).getValue());
+        cache.get(ids[1]);
+        assertEquals(2, cache.size());
+        cache.get(ids[0]);
+        cache.get(ids[2]);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+        cache.get(ids[0]);
+        cache.get(ids[2]);
+        assertEquals(3, cache.hits());
+        cache.get(ids[1]);
+        assertEquals(3, cache.hits());
+        assertEquals(4, cache.misses());
+        assertNull(cache.get(Utils.sha1Id("missing")));
+        assertEquals(5, cache.misses());
+        new File("cache.txt").delete();
+        clearRepository();
+    }
+
+    /** Compressed bitmaps hold the same bits as the sets they came from. */
+    @Test
+    public void ewahBitmapTest() throws IOException {
+        BitSet bits = new BitSet();
+        bits.set(0, 1000);
+        bits.set(1003);
+        bits.set(5000, 5100);
+        bits.set(9999);
+        EwahBitmap bitmap = EwahBitmap.of(bits);
+        assertTrue(bitmap.sizeInWords() < 20);
+        assertEquals(bits.cardinality(), bitmap.cardinality());
+        for (int k = 0; k < 10100; k += 1) {
+            assertEquals(bits.get(k), bitmap.get(k));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        BitSet copy = new BitSet();
+        EwahBitmap.read(new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()))).orInto(copy);
+        assertEquals(bits, copy);
+        assertEquals(0, EwahBitmap.of(new BitSet()).cardinality());
+    }
+
+    /** Batch lines split into arguments as a shell would split them. */
+    @Test
+    public void batchSplitTest() {
+        assertArrayEquals(new String[] { "commit", "two words" },
+                Batch.split("commit  \"two words\""));
+        assertArrayEquals(new String[] { "commit", "it's \"here\"" },
+                Batch.split("commit 'it'\\''s \"here\"'"));
+        assertArrayEquals(new String[] { "find", "" },
+                Batch.split("find ''"));
+        assertArrayEquals(new String[] { "a b" }, Batch.split("a\\ b"));
+        assertNull(Batch.split("commit \"open"));
+    }
+
+    /** Operations are counted only while statistics are enabled. */
+    @Test
+    public void statsTest() {
+        assertArrayEquals(new String[] { "log" },
+                Stats.command(new String[] { "--stats", "log" }));
+        Stats.enable(true);
+        Utils.sha1("abc", "de");
+        Utils.sha1("f");
+        long[] totals = Stats.totals("sha1");
+        assertEquals(2, totals[0]);
+        assertEquals(6, totals[2]);
+        Stats.enable(false);
+        Utils.sha1("abc");
+        assertEquals(0, Stats.totals("sha1")[0]);
+    }
+
+    /** Diffs are minimal edit scripts turning one text into the other. */
+    @Test
+    public void diffTest() {
+        String[][] cases = {
+            { "abcabba", "cbabac" }, { "", "xyz" }, { "xyz", "" },
+            { "aaaa", "aa" }, { "abcdef", "abXdeYf" }, { "abc", "abc" },
+        };
+        int[] costs = { 5, 3, 3, 2, 3, 0 };
+        for (int c = 0; c < cases.length; c += 1) {
+            String a = cases[c][0], b = cases[c][1];
+            Diff diff = new Diff(lines(a), lines(b));
+            StringBuilder result = new StringBuilder();
+            int i = 0, cost = 0;
+            for (int[] change : diff.changes()) {
+                result.append(a, i, change[0]).append(b, change[2],
+                        change[3]);
+                cost += change[1] - change[0] + change[3] - change[2];
+                i = change[1];
+            }
+            result.append(a.substring(i));
+            assertEquals(b, result.toString());
+            assertEquals(costs[c], cost);
+        }
+    }
+
+    /** Return LENGTH bytes of lines of words, chosen from SEED. */
+    private static byte[] bytes(int length, long seed) {
+        Random random = new Random(seed);
+        String[] words = { "alpha ", "beta ", "gamma ", "delta\n" };
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]);
+        }
+        return text.substring(0, length).getBytes();
+    }
+
+    /** Return A followed by B. */
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /** Run the gitlet command ARGS here, as Main would. */
+    private static void run(String... args) {
+        Gitlet git = Gitlet.reconstruct();
+        Gitlet.interpret(args, git);
+        git.serialize();
+    }
+
+    /** Delete the repository in the working directory, if any. */
+    private static void clearRepository() {
+        File repo = new File(".gitlet");
+        if (repo.exists()) {
+            try (Stream<Path> paths = Files.walk(repo.toPath())) {
+                paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        ObjectStore.reloadPack();
+    }
+
+    /** Return a text with each character of S on its own line. */
+    private static Diff.Text lines(String s) {
+        return new Diff.Text(ByteBuffer.wrap(s.replaceAll("(.)", "$1\n")
+                .getBytes()));
+    }
+
+    /** Branch names are encoded into single, reversible file names. */
+    @Test
+    public void refsEncodeTest() {
+        assertEquals("feature%2Fx", Refs.encode("feature/x"));
+        assertEquals("%2E.%2Fevil", Refs.encode("../evil"));
+        assertEquals("v1.0", Refs.encode("v1.0"));
+        for (String name : new String[] { "feature/x", "../evil", "a%2F",
+                                          "caf\u00e9", ".hidden" }) {
+            assertEquals(name, Refs.decode(Refs.encode(name)));
+        }
+    }
+
 }
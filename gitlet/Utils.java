@@ -3,12 +3,16 @@ package gitlet;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.Files;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 /**
@@ -25,27 +29,97 @@ class Utils {
      * mixture of byte arrays and Strings.
      */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
+        return sha1Id(vals).toString();
+    }
+
+    /**
+     * Returns the SHA-1 hash of the concatenation of VALS, which may be any
+     * mixture of byte arrays and Strings, as an ObjectId.
+     */
+    static ObjectId sha1Id(Object... vals) {
+        Stats.Timer timer = Stats.start("sha1");
+        MessageDigest md = sha1Digest();
+        long bytes = 0;
+        for (Object val : vals) {
+            byte[] data;
+            if (val instanceof byte[]) {
+                data = (byte[]) val;
+            } else if (val instanceof String) {
+                data = ((String) val).getBytes(StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+            md.update(data);
+            bytes += data.length;
+        }
+        ObjectId id = ObjectId.fromRaw(md.digest());
+        timer.stop(bytes);
+        return id;
+    }
+
+    /**
+     * Returns the SHA-1 hash of the contents of FILE, which is streamed
+     * through a fixed-size direct buffer, so that memory use does not
+     * depend on the size of FILE. Throws IllegalArgumentException in case
+     * of problems.
+     */
+    static ObjectId sha1(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        Stats.Timer timer = Stats.start("sha1.file");
+        MessageDigest md = sha1Digest();
+        ByteBuffer buffer = HASH_BUFFER.get();
+        long bytes = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                bytes += buffer.remaining();
+                md.update(buffer);
+                buffer.clear();
             }
-            return result.toString();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectId id = ObjectId.fromRaw(md.digest());
+        timer.stop(bytes);
+        return id;
+    }
+
+    /**
+     * Returns this thread's SHA-1 MessageDigest, reset and ready for use.
+     * Digests are reused rather than looked up for every hash.
+     */
+    static MessageDigest sha1Digest() {
+        MessageDigest md = SHA1.get();
+        md.reset();
+        return md;
+    }
+
+    /** Returns a fresh SHA-1 MessageDigest. */
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** Size of the direct buffer through which files are hashed. */
+    static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    /** Each thread's SHA-1 digest. */
+    private static final ThreadLocal<MessageDigest> SHA1 =
+        ThreadLocal.withInitial(Utils::newSha1);
+
+    /** Each thread's buffer for hashing files. */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFER =
+        ThreadLocal.withInitial(() ->
+            ByteBuffer.allocateDirect(HASH_BUFFER_SIZE));
+
+
     /**
      * Returns the SHA-1 hash of the concatenation of the strings in VALS.
      */
@@ -92,8 +166,11 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
+        Stats.Timer timer = Stats.start("file.read");
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] contents = Files.readAllBytes(file.toPath());
+            timer.stop(contents.length);
+            return contents;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -109,12 +186,29 @@ class Utils {
                 throw new IllegalArgumentException(
                         "cannot overwrite directory");
             }
+            Stats.Timer timer = Stats.start("file.write");
             Files.write(file.toPath(), bytes);
+            timer.stop(bytes.length);
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Size of the buffers used when streaming file contents. */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Copy everything remaining in IN to OUT through a bounded buffer.
+     * Throws IOException in case of problems.
+     */
+    static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+    }
+
     /* DIRECTORIES */
 
     /** Filter out all but plain files. */
@@ -131,7 +225,9 @@ class Utils {
      * a directory.
      */
     static List<String> plainFilenamesIn(File dir) {
+        Stats.Timer timer = Stats.start("scan.directory");
         String[] files = dir.list(PLAIN_FILES);
+        timer.stop(files == null ? 0 : files.length);
         if (files == null) {
             return null;
         } else {
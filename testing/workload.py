@@ -0,0 +1,181 @@
+
+import sys, random
+from getopt import getopt, GetoptError
+from os import makedirs
+from os.path import join
+
+SHORT_USAGE = """\
+Usage: python3 workload.py OPTIONS NAME
+
+   OPTIONS may include
+       --commits=N      Number of ordinary commits (default 1000).
+       --files=N        Number of paths each branch works on (default 50).
+       --branches=N     Number of feature branches besides master
+                        (default 4).
+       --merge-every=N  Merge a feature branch into master every N commits
+                        (default 25; 0 for no merges).
+       --switch-every=N Change the branch being worked on every N commits
+                        on average (default 10).
+       --status-every=N Run status and find every N commits (default 50;
+                        0 for never).
+       --variants=N     Number of distinct file contents (default 200).
+       --size=N         Size in bytes of each file content (default 2048).
+       --seed=N         Seed of the random choices (default 61).
+       --out=DIR        Directory to write NAME.in to (default workloads).
+"""
+
+USAGE = SHORT_USAGE + """\
+
+Writes a synthetic workload, DIR/NAME.in, in the format of the autograder
+scripts read by tester.py, and the file contents it copies in,
+src/NAME/c*.txt. Run it with tester.py (which checks every output) or time
+it with gitlet.Replay.
+
+The workload is a history of COMMITS commits on master and BRANCHES
+feature branches.  Each commit changes, adds or removes one to three files
+among those owned by the branch it is made on, so that branches never
+change the same files.  Every MERGE-EVERY commits, a feature branch gets a
+fresh commit and is merged into master; since only master merges, and
+features change only their own files, merges never conflict.  Feature
+branches are never fast-forwarded, so every merge makes a merge commit.
+The expected output of every command is given, exactly except for the
+commit ids printed by find, which are matched as patterns."""
+
+
+def Usage():
+    print(SHORT_USAGE, file=sys.stderr)
+    sys.exit(1)
+
+
+class Workload:
+    """The commands of a workload and what the repository holds."""
+
+    def __init__(self, name, files, variants, rand):
+        self.name = name
+        self.files = files
+        self.variants = variants
+        self.rand = rand
+        self.lines = []
+        self.commits = 0
+        self.current = "master"
+        # Contents (variant numbers) of the files of each branch.
+        self.trees = { "master": {} }
+
+    def command(self, cmnd, *expected, regexp=False):
+        self.lines.append("> " + cmnd)
+        self.lines.extend(expected)
+        self.lines.append("<<<*" if regexp else "<<<")
+
+    def owned(self, branch, k):
+        return "{}-f{}.txt".format(branch, k)
+
+    def change(self):
+        """Change, add or remove one to three files of the current branch,
+        then commit."""
+        tree = self.trees[self.current]
+        for k in self.rand.sample(range(self.files),
+                                  self.rand.randint(1, min(3, self.files))):
+            path = self.owned(self.current, k)
+            if path in tree and self.rand.random() < 0.05:
+                self.command("rm " + path)
+                del tree[path]
+                continue
+            variant = self.rand.randrange(self.variants)
+            while variant == tree.get(path):
+                variant = self.rand.randrange(self.variants)
+            self.lines.append("+ {} {}/c{}.txt".format(path, self.name,
+                                                      variant))
+            self.command("add " + path)
+            tree[path] = variant
+        self.commits += 1
+        self.command('commit "{} commit {}"'.format(self.current,
+                                                   self.commits))
+
+    def checkout(self, branch):
+        if branch != self.current:
+            self.command("checkout " + branch)
+            self.current = branch
+
+    def branch(self, name):
+        self.command("branch " + name)
+        self.trees[name] = dict(self.trees[self.current])
+
+    def merge(self, feature):
+        self.checkout(feature)
+        self.change()
+        self.checkout("master")
+        self.change()
+        self.command("merge " + feature)
+        master = self.trees["master"]
+        for path in list(master):
+            if path.startswith(feature + "-") \
+               and path not in self.trees[feature]:
+                del master[path]
+        for path, variant in self.trees[feature].items():
+            if path.startswith(feature + "-"):
+                master[path] = variant
+
+    def status(self):
+        lines = ["=== Branches ==="]
+        for name in sorted(self.trees):
+            lines.append(("*" if name == self.current else "") + name)
+        lines += ["", "=== Staged Files ===", "", "=== Removed Files ===",
+                  "", "=== Modifications Not Staged For Commit ===", "",
+                  "=== Untracked Files ==="]
+        self.command("status", *lines)
+        self.command('find "{} commit {}"'.format(self.current, self.commits),
+                     "[0-9a-f]{40}", regexp=True)
+
+
+if __name__ == "__main__":
+    options = { "commits": 1000, "files": 50, "branches": 4,
+                "merge-every": 25, "switch-every": 10, "status-every": 50,
+                "variants": 200, "size": 2048, "seed": 61 }
+    out_dir = "workloads"
+    try:
+        opts, args = getopt(sys.argv[1:], '',
+                            [name + "=" for name in options] + ["out="])
+        for opt, val in opts:
+            if opt == "--out":
+                out_dir = val
+            else:
+                options[opt[2:]] = int(val)
+    except (GetoptError, ValueError):
+        Usage()
+    if len(args) != 1:
+        print(USAGE)
+        sys.exit(0)
+    name = args[0]
+    rand = random.Random(options["seed"])
+
+    src = join("src", name)
+    makedirs(src, exist_ok=True)
+    alphabet = "abcdefghijklmnopqrstuvwxyz      "
+    for k in range(options["variants"]):
+        text = "".join("\n" if i % 64 == 63 else rand.choice(alphabet)
+                       for i in range(options["size"]))
+        with open(join(src, "c{}.txt".format(k)), "w") as out:
+            out.write(text)
+
+    work = Workload(name, max(1, options["files"]), options["variants"], rand)
+    work.lines.append("# Generated by workload.py with {}".format(
+        " ".join("--{}={}".format(k, v) for k, v in options.items())))
+    work.command("init")
+    features = ["b{}".format(i) for i in range(options["branches"])]
+    for feature in features:
+        work.branch(feature)
+    for n in range(1, options["commits"] + 1):
+        if features and options["switch-every"] > 0 \
+           and rand.randrange(options["switch-every"]) == 0:
+            work.checkout(rand.choice(["master"] + features))
+        work.change()
+        if features and options["merge-every"] > 0 \
+           and n % options["merge-every"] == 0:
+            work.merge(rand.choice(features))
+        if options["status-every"] > 0 and n % options["status-every"] == 0:
+            work.status()
+
+    makedirs(out_dir, exist_ok=True)
+    with open(join(out_dir, name + ".in"), "w") as out:
+        for line in work.lines:
+            print(line, file=out)